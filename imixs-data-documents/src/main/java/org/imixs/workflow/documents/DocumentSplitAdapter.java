@@ -1,8 +1,6 @@
 package org.imixs.workflow.documents;
 
 import java.util.List;
-import java.util.Map;
-import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -276,30 +274,7 @@ public class DocumentSplitAdapter implements SignalAdapter {
         }
 
         // clone the field list...
-        StringTokenizer st = new StringTokenizer(items, ",");
-        while (st.hasMoreTokens()) {
-            String field = st.nextToken().trim();
-
-            // test if field is a reg ex
-            if (field.startsWith("(") && field.endsWith(")")) {
-                Pattern itemPattern = Pattern.compile(field);
-                Map<String, List<Object>> map = source.getAllItems();
-                for (String itemName : map.keySet()) {
-                    if (itemPattern.matcher(itemName).find()) {
-                        target.replaceItemValue(itemName, source.getItemValue(itemName));
-                    }
-                }
-            } else {
-                // default behavior without reg ex
-                int pos = field.indexOf('|');
-                if (pos > -1) {
-                    target.replaceItemValue(field.substring(pos + 1).trim(),
-                            source.getItemValue(field.substring(0, pos).trim()));
-                } else {
-                    target.replaceItemValue(field, source.getItemValue(field));
-                }
-            }
-        }
+        ItemCopyPlan.compile(items).apply(source, target);
     }
 
     /**
@@ -0,0 +1,121 @@
+package org.imixs.workflow.documents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.imixs.workflow.ItemCollection;
+
+/**
+ * The ItemCopyPlan is a precompiled form of an item list used to copy items
+ * from a source into a target ItemCollection. Multiple values are separated
+ * with comma ','.
+ * <p>
+ * In case a item name contains '|' the target field name will become the right
+ * part of the item name. A reg expression must be included in brackets.
+ * <p>
+ * Example: {@code
+ *   txttitle|newitem1,(^artikel$|^invoice$)
+ * }
+ * <p>
+ * The plans are cached per item list, so the item list is tokenized and the
+ * reg expressions are compiled only once. If the item list contains no reg
+ * expressions, the source items are not scanned.
+ * <p>
+ * Note: This class is a copy of {@code org.imixs.workflow.datagroup.ItemCopyPlan} - a fix must be applied to both.
+ * 
+ * @author rsoika
+ *
+ */
+public class ItemCopyPlan {
+
+    private static final int MAX_CACHE_SIZE = 1000;
+    private static final Map<String, ItemCopyPlan> cache = new ConcurrentHashMap<String, ItemCopyPlan>();
+
+    private final String[] sourceNames;
+    private final String[] targetNames;
+    private final Pattern[] patterns;
+    private final boolean hasPatterns;
+
+    private ItemCopyPlan(String items) {
+        List<String> fields = new ArrayList<String>();
+        StringTokenizer st = new StringTokenizer(items, ",");
+        while (st.hasMoreTokens()) {
+            String field = st.nextToken().trim();
+            if (!field.isEmpty()) {
+                fields.add(field);
+            }
+        }
+        sourceNames = new String[fields.size()];
+        targetNames = new String[fields.size()];
+        patterns = new Pattern[fields.size()];
+        boolean regex = false;
+        for (int i = 0; i < fields.size(); i++) {
+            String field = fields.get(i);
+            // test if field is a reg ex
+            if (field.startsWith("(") && field.endsWith(")")) {
+                patterns[i] = Pattern.compile(field);
+                regex = true;
+            } else {
+                int pos = field.indexOf('|');
+                if (pos > -1) {
+                    sourceNames[i] = field.substring(0, pos).trim();
+                    targetNames[i] = field.substring(pos + 1).trim();
+                } else {
+                    sourceNames[i] = field;
+                    targetNames[i] = field;
+                }
+            }
+        }
+        hasPatterns = regex;
+    }
+
+    /**
+     * Returns the cached ItemCopyPlan for the given item list.
+     * 
+     * @param items - comma separated item list
+     * @return ItemCopyPlan
+     */
+    public static ItemCopyPlan compile(String items) {
+        ItemCopyPlan plan = cache.get(items);
+        if (plan == null) {
+            plan = new ItemCopyPlan(items);
+            if (cache.size() >= MAX_CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put(items, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Copies the items of this plan from the source into the target
+     * ItemCollection.
+     * 
+     * @param source
+     * @param target
+     */
+    public void apply(ItemCollection source, ItemCollection target) {
+        if (!hasPatterns) {
+            for (int i = 0; i < sourceNames.length; i++) {
+                target.replaceItemValue(targetNames[i], source.getItemValue(sourceNames[i]));
+            }
+            return;
+        }
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i] != null) {
+                Map<String, List<Object>> map = source.getAllItems();
+                for (String itemName : map.keySet()) {
+                    if (patterns[i].matcher(itemName).find()) {
+                        target.replaceItemValue(itemName, source.getItemValue(itemName));
+                    }
+                }
+            } else {
+                target.replaceItemValue(targetNames[i], source.getItemValue(sourceNames[i]));
+            }
+        }
+    }
+}
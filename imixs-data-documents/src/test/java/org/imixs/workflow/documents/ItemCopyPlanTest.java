@@ -0,0 +1,74 @@
+package org.imixs.workflow.documents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import org.imixs.workflow.ItemCollection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test the ItemCopyPlan with literal, renamed and reg expression item lists
+ */
+class ItemCopyPlanTest {
+
+    private ItemCollection source;
+
+    @BeforeEach
+    public void setUp() {
+        source = new ItemCollection();
+        source.setItemValue("txttitle", "Hello");
+        source.setItemValue("txtfirstname", "Anna");
+        source.setItemValue("artikel", "A-100");
+        source.setItemValue("invoice", "R-200");
+    }
+
+    @Test
+    void testLiteralAndRename() {
+        ItemCollection target = new ItemCollection();
+        ItemCopyPlan.compile("txttitle, txtfirstname|newitem").apply(source, target);
+
+        assertEquals("Hello", target.getItemValueString("txttitle"));
+        assertEquals("Anna", target.getItemValueString("newitem"));
+        assertFalse(target.hasItem("txtfirstname"));
+    }
+
+    @Test
+    void testRegex() {
+        ItemCollection target = new ItemCollection();
+        ItemCopyPlan.compile("(^artikel$|^invoice$),txttitle|title").apply(source, target);
+
+        assertEquals("A-100", target.getItemValueString("artikel"));
+        assertEquals("R-200", target.getItemValueString("invoice"));
+        assertEquals("Hello", target.getItemValueString("title"));
+        assertFalse(target.hasItem("txtfirstname"));
+    }
+
+    /**
+     * Without a reg expression the source items are not scanned
+     */
+    @Test
+    void testNoRegex() {
+        ItemCollection spySource = spy(source);
+        ItemCollection target = new ItemCollection();
+        ItemCopyPlan.compile("txttitle,artikel|article").apply(spySource, target);
+
+        assertEquals("Hello", target.getItemValueString("txttitle"));
+        assertEquals("A-100", target.getItemValueString("article"));
+        assertFalse(target.hasItem("invoice"));
+        verify(spySource, never()).getAllItems();
+
+        ItemCopyPlan.compile("txttitle,(^art)").apply(spySource, target);
+        verify(spySource, atLeastOnce()).getAllItems();
+    }
+
+    @Test
+    void testCache() {
+        assertSame(ItemCopyPlan.compile("txttitle,(^art)"), ItemCopyPlan.compile("txttitle,(^art)"));
+    }
+}
@@ -272,6 +272,31 @@ public class DataGroupController extends ViewController {
         return dataViewDefinition;
     }
 
+    /**
+     * Loads the current page of the data group. If a DataView definition is
+     * defined, the data is projected to the view items. In case all view items are
+     * stored in the search index, only document stubs are loaded.
+     * <p>
+     * The endOfList flag is computed in the same way as by the ViewController.
+     */
+    @Override
+    public List<ItemCollection> loadData() throws QueryException {
+        String query = getQuery();
+        if (dataViewDefinition == null || query == null || query.isEmpty()) {
+            return super.loadData();
+        }
+        List<ItemCollection> result = dataViewService.findProjection(query, getPageSize(), getPageIndex(),
+                getSortBy(), isSortReverse(), viewItemDefinitions);
+        if (result.size() < getPageSize()) {
+            setEndOfList(true);
+        } else {
+            // test if there are more entries after the current page
+            int max = getPageSize() * (getPageIndex() + 1) + 1;
+            setEndOfList(documentService.count(query, max) < max);
+        }
+        return result;
+    }
+
     public List<ItemCollection> getViewItemDefinitions() {
         return viewItemDefinitions;
     }
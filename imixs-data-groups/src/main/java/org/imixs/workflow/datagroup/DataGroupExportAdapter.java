@@ -14,13 +14,26 @@
 
 package org.imixs.workflow.datagroup;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.imixs.workflow.FileData;
@@ -54,6 +67,12 @@ import jakarta.inject.Inject;
  * }
  * </pre>
  * 
+ * With the optional tag {@code <mode>delta</mode>} a CSV export only contains
+ * the rows changed since the last export. With {@code <merge>true</merge>} the
+ * changes are merged into the previous export file. With
+ * {@code <scan>full</scan>} all rows are compared instead of only the rows
+ * modified since the last export.
+ * 
  * @author Ralph Soika
  * @version 1.0
  *
@@ -151,12 +170,15 @@ public class DataGroupExportAdapter implements SignalAdapter {
         }
         String targetname = groupDefinition.getItemValueString("targetname").trim();
         String dataview = groupDefinition.getItemValueString("dataview").trim();
+        String mode = groupDefinition.getItemValueString("mode").trim();
 
         logger.info("├── export dataGroup: " + type + " -> " + targetname);
         if (debug) {
             logger.info("│   ├── type=" + type);
             logger.info("│   ├── separator=" + separator);
+            logger.info("│   ├── mode=" + mode);
             logger.info("│   ├── dataview='" + dataview + "'");
+            logger.info("│   ├── stream=" + groupDefinition.getItemValueBoolean("stream"));
         }
         try {
             // find definition
@@ -167,17 +189,24 @@ public class DataGroupExportAdapter implements SignalAdapter {
             }
 
             // load data
-            byte[] fileRawData = null;
             if (debug) {
                 logger.info("│   ├── export data....");
             }
-            if ("csv".equalsIgnoreCase(type)) {
-                fileRawData = exportCSV(workitem, dataViewDefinition, separator);
-                FileData fileData = new FileData(targetname, fileRawData, "application/text", null);
+            if ("csv".equalsIgnoreCase(type) && "delta".equalsIgnoreCase(mode)) {
+                exportCSVDelta(workitem, dataViewDefinition, separator, targetname,
+                        groupDefinition.getItemValueBoolean("merge"),
+                        "full".equalsIgnoreCase(groupDefinition.getItemValueString("scan").trim()), debug);
+                logger.info("│   ├── ✅ export successful");
+            } else if ("csv".equalsIgnoreCase(type)) {
+                FileData fileData = exportCSV(workitem, dataViewDefinition, separator, targetname, null);
                 workitem.addFileData(fileData);
                 logger.info("│   ├── ✅ export successful");
             } else if ("poi".equalsIgnoreCase(type)) {
-                FileData fileData = exportPoi(workitem, dataViewDefinition);
+                if ("delta".equalsIgnoreCase(mode)) {
+                    logger.info("│   ├── ⚠️ delta mode not supported for type POI - full export");
+                }
+                FileData fileData = exportPoi(workitem, dataViewDefinition,
+                        groupDefinition.getItemValueBoolean("stream"));
                 workitem.addFileData(fileData);
                 logger.info("│   ├── ✅ export successful");
             } else {
@@ -196,36 +225,61 @@ public class DataGroupExportAdapter implements SignalAdapter {
     }
 
     /**
-     * Writes a CSV File into a bye array based on the given ViewItems definition
-     * and the data collection
+     * Writes a CSV File based on the given ViewItems definition and the data
+     * collection.
+     * <p>
+     * The data is loaded page by page and written with a buffered writer. Each
+     * line is build in a single reusable StringBuilder. As the content of a
+     * FileData object is stored as a byte array in the workitem, the content is
+     * written directly into a byte buffer.
      * 
-     * @param data
+     * @param uniqueIds - optional list collecting the $uniqueid of each exported
+     *                  row
      * @throws QueryException
+     * @throws PluginException
      */
-    private byte[] exportCSV(ItemCollection workitem, ItemCollection dataViewDefinition, String separator)
-            throws QueryException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        PrintWriter writer = new PrintWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8));
+    private FileData exportCSV(ItemCollection workitem, ItemCollection dataViewDefinition, String separator,
+            String targetname, List<String> uniqueIds) throws QueryException, PluginException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(65536);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8), 65536)) {
+            writeCSV(workitem, dataViewDefinition, separator, writer, uniqueIds);
+        } catch (IOException e) {
+            throw new PluginException(DataGroupAdapter.class.getName(),
+                    DataGroupService.API_ERROR, "⚠️ Failed to write CSV export: " + e.getMessage(), e);
+        }
+        // attach the result
+        return new FileData(targetname, buffer.toByteArray(), "application/text", null);
+    }
+
+    /**
+     * Writes the CSV data of a data group into the given writer. The data is
+     * loaded in pages of 500 workitems.
+     * 
+     * @param workitem
+     * @param dataViewDefinition
+     * @param separator
+     * @param writer
+     * @param uniqueIds          - optional list collecting the $uniqueid of each
+     *                           row
+     * @throws QueryException
+     * @throws IOException
+     */
+    private void writeCSV(ItemCollection workitem, ItemCollection dataViewDefinition, String separator,
+            Writer writer, List<String> uniqueIds) throws QueryException, IOException {
 
         List<ItemCollection> viewItemDefinitions = dataViewService
                 .computeDataViewItemDefinitions(dataViewDefinition);
+        CSVLayout layout = new CSVLayout(viewItemDefinitions, separator);
 
+        StringBuilder line = new StringBuilder(256);
         // write header
-        String header = "";
-        for (ItemCollection itemDef : viewItemDefinitions) {
-            String label = itemDef.getItemValueString("item.label");
-            header = header + escapeCSVField(label) + separator;
-        }
-        // cut last separator...
-        if (header.length() > 0) {
-            header = header.substring(0, header.length() - separator.length());
-        }
-        writer.println(header);
+        layout.appendHeader(line);
+        writer.append(line).append(System.lineSeparator());
 
         int page = 0;
         while (true) {
             List<ItemCollection> data = dataGroupService.loadData(workitem.getUniqueID(), 500, page, null, false,
-                    false);
+                    viewItemDefinitions);
 
             if (data.size() == 0) {
                 break;
@@ -233,118 +287,448 @@ public class DataGroupExportAdapter implements SignalAdapter {
             logger.info("│   ├── ☑️ loaded data - " + data.size() + " workitems found");
             // iterate over the data
             for (ItemCollection dataWorkitem : data) {
-                String line = "";
-                // build each column
-                for (ItemCollection itemDef : viewItemDefinitions) {
-                    String type = itemDef.getItemValueString("item.type");
-                    String name = itemDef.getItemValueString("item.name");
-                    String format = itemDef.getItemValueString("item.format"); // optional
-
-                    String fieldValue = "";
-
-                    switch (type) {
-                        case "xs:double":
-                            double _double = dataWorkitem.getItemValueDouble(name);
-                            if (format != null && !format.isEmpty()) {
-                                fieldValue = String.format(format, _double);
-                            } else {
-                                fieldValue = String.valueOf(_double);
-                            }
-                            break;
-
-                        case "xs:float":
-                            float _float = dataWorkitem.getItemValueFloat(name);
-                            if (format != null && !format.isEmpty()) {
-                                fieldValue = String.format(format, _float);
-                            } else {
-                                fieldValue = String.valueOf(_float);
-                            }
-                            break;
-
-                        case "xs:int":
-                            int _int = dataWorkitem.getItemValueInteger(name);
-                            if (format != null && !format.isEmpty()) {
-                                fieldValue = String.format(format, _int);
-                            } else {
-                                fieldValue = String.valueOf(_int);
-                            }
-                            break;
-
-                        case "xs:date":
-                            Date _date = dataWorkitem.getItemValueDate(name);
-                            if (_date != null) {
-                                if (format != null && !format.isEmpty()) {
-                                    SimpleDateFormat sdf = new SimpleDateFormat(format);
-                                    fieldValue = sdf.format(_date);
-                                } else {
-                                    fieldValue = _date.toString();
-                                }
-                            }
-                            break;
-
-                        default:
-                            // string
-                            String value = dataWorkitem.getItemValueString(name);
-                            if (value != null) {
-                                if (format != null && !format.isEmpty()) {
-                                    fieldValue = String.format(format, value);
-                                } else {
-                                    fieldValue = value;
-                                }
-                            }
-                            break;
-                    }
+                line.setLength(0);
+                layout.appendRow(line, dataWorkitem);
+                // add line
+                writer.append(line).append(System.lineSeparator());
+                if (uniqueIds != null) {
+                    uniqueIds.add(dataWorkitem.getUniqueID());
+                }
+            }
 
-                    line = line + escapeCSVField(fieldValue) + separator;
+            // next page
+            page++;
+        }
+    }
+
+    /**
+     * Creates an incremental CSV export of a data group.
+     * <p>
+     * The method exports only the rows added, changed or removed since the last
+     * export into a delta file '[targetname]-delta.csv'. The first column of the
+     * delta file contains the change type (added|changed|removed) and the second
+     * column the $uniqueid of the workitem.
+     * <p>
+     * The state of the last export is stored in the items
+     * 'datagroup.export.[targetname].modified|count|hash' and in an index file
+     * '[targetname].idx' listing the $uniqueid and a hash of the columns of each
+     * row of the last export. Only the workitems modified since the last export
+     * are loaded projected to the view columns, and a row is only exported if its
+     * column hash differs from the last export. Removed workitems are detected by
+     * comparing the index with the $uniqueid of all members, loaded as stubs. If a
+     * member is neither part of the last export nor modified since, a full scan is
+     * done.
+     * <p>
+     * With the option 'fullScan' all members are loaded projected to the view
+     * columns and compared by their column hash. This also detects changes not
+     * reflected in $modified, but the cost grows with the size of the data group.
+     * <p>
+     * If the option 'merge' is set, the delta is merged into the previous export
+     * file [targetname]. If the previous export file does not match the index, a
+     * full export is created.
+     * 
+     * @throws QueryException
+     * @throws PluginException
+     */
+    private void exportCSVDelta(ItemCollection workitem, ItemCollection dataViewDefinition, String separator,
+            String targetname, boolean merge, boolean fullScan, boolean debug)
+            throws QueryException, PluginException {
+        String uniqueid = workitem.getUniqueID();
+        String watermark = "datagroup.export." + targetname;
+        String indexName = targetname + ".idx";
+
+        List<ItemCollection> viewItemDefinitions = dataViewService
+                .computeDataViewItemDefinitions(dataViewDefinition);
+        CSVLayout layout = new CSVLayout(viewItemDefinitions, separator);
+
+        // the export start in seconds resolution of the $modified search
+        Date exportStart = new Date((System.currentTimeMillis() / 1000) * 1000);
+
+        // load the state of the last export
+        Date since = workitem.getItemValueDate(watermark + ".modified");
+        Map<String, Long> previousRows = new LinkedHashMap<String, Long>();
+        if (since != null) {
+            previousRows = loadExportIndex(workitem, indexName);
+            if (previousRows.size() != workitem.getItemValueInteger(watermark + ".count")
+                    || computeMemberHash(previousRows.keySet()) != workitem.getItemValueLong(watermark + ".hash")) {
+                logger.warning("│   ├── ⚠️ export index '" + indexName
+                        + "' does not match the last export - full export required");
+                since = null;
+                previousRows = new LinkedHashMap<String, Long>();
+            }
+        }
+        if (debug) {
+            logger.info("│   ├── last export=" + since + " rows=" + previousRows.size() + " fullScan=" + fullScan);
+        }
+
+        // without a full scan only the workitems modified since the last export are
+        // loaded. Removed members are detected by the $uniqueid of all members.
+        boolean incremental = !fullScan && since != null;
+        Set<String> memberIds = null;
+        if (incremental) {
+            memberIds = loadMemberIds(uniqueid);
+        }
+
+        // write the rows with a changed column hash
+        Map<String, Long> currentRows = incremental ? new HashMap<String, Long>(previousRows)
+                : new HashMap<String, Long>();
+        Set<String> scannedIds = new HashSet<String>();
+        Map<String, String> changedRows = new HashMap<String, String>();
+        List<String> addedIds = new ArrayList<String>();
+        int changed = 0;
+        List<String> removedIds = new ArrayList<String>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(65536);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8), 65536)) {
+            StringBuilder line = new StringBuilder(256);
+            line.append("change").append(separator).append("$uniqueid").append(separator);
+            layout.appendHeader(line);
+            writer.append(line).append(System.lineSeparator());
+            int page = 0;
+            while (true) {
+                List<ItemCollection> data = incremental
+                        ? dataGroupService.loadDataModifiedSince(uniqueid, since, 500, page, viewItemDefinitions)
+                        : dataGroupService.loadData(uniqueid, 500, page, "$created", false, viewItemDefinitions);
+                for (ItemCollection dataWorkitem : data) {
+                    String id = dataWorkitem.getUniqueID();
+                    if (!scannedIds.add(id)) {
+                        continue;
+                    }
+                    line.setLength(0);
+                    layout.appendRow(line, dataWorkitem);
+                    long hash = computeHash(line);
+                    currentRows.put(id, hash);
+                    Long previousHash = previousRows.get(id);
+                    if (previousHash != null && previousHash == hash) {
+                        continue;
+                    }
+                    if (previousHash == null) {
+                        addedIds.add(id);
+                    } else {
+                        changed++;
+                    }
+                    if (merge) {
+                        changedRows.put(id, line.toString());
+                    }
+                    writer.append(previousHash == null ? "added" : "changed").append(separator).append(id)
+                            .append(separator).append(line).append(System.lineSeparator());
+                }
+                if (data.size() < 500) {
+                    break;
                 }
+                page++;
+            }
+            if (incremental) {
+                // a member neither exported nor modified since requires a full scan
+                for (String id : memberIds) {
+                    if (!previousRows.containsKey(id) && !scannedIds.contains(id)) {
+                        logger.info("│   ├── ⚠️ member '" + id + "' not modified since the last export - full scan");
+                        exportCSVDelta(workitem, dataViewDefinition, separator, targetname, merge, true, debug);
+                        return;
+                    }
+                }
+            }
+            // members of the last export no longer found
+            for (String id : previousRows.keySet()) {
+                if (!scannedIds.contains(id) && (!incremental || !memberIds.contains(id))) {
+                    removedIds.add(id);
+                    currentRows.remove(id);
+                    writer.append("removed").append(separator).append(id).append(System.lineSeparator());
+                }
+            }
+        } catch (IOException e) {
+            throw new PluginException(DataGroupAdapter.class.getName(),
+                    DataGroupService.API_ERROR, "⚠️ Failed to write CSV delta export: " + e.getMessage(), e);
+        }
+        logger.info("│   ├── ☑️ " + addedIds.size() + " added, " + changed + " changed, " + removedIds.size()
+                + " removed");
+        workitem.addFileData(new FileData(computeDeltaFileName(targetname), buffer.toByteArray(),
+                "application/text", null));
+
+        // compute the new member index in the row order of the export file
+        List<String> currentIds = new ArrayList<String>(currentRows.size());
+        for (String id : previousRows.keySet()) {
+            if (currentRows.containsKey(id)) {
+                currentIds.add(id);
+            }
+        }
+        currentIds.addAll(addedIds);
+
+        // merge into the previous export
+        if (merge) {
+            FileData fileData = mergeCSV(workitem, targetname, layout, previousRows.keySet(), changedRows,
+                    new HashSet<String>(removedIds), addedIds);
+            if (fileData == null) {
+                logger.warning("│   ├── ⚠️ previous export '" + targetname
+                        + "' does not match the export index - full export required");
+                currentIds = new ArrayList<String>();
+                fileData = exportCSV(workitem, dataViewDefinition, separator, targetname, currentIds);
+            }
+            workitem.addFileData(fileData);
+        }
+
+        // update the state
+        StringBuilder index = new StringBuilder(currentIds.size() * 56);
+        for (String id : currentIds) {
+            Long hash = currentRows.get(id);
+            index.append(id).append(';').append(Long.toHexString(hash != null ? hash : 0)).append('\n');
+        }
+        workitem.addFileData(new FileData(indexName, index.toString().getBytes(StandardCharsets.UTF_8),
+                "text/plain", null));
+        workitem.setItemValue(watermark + ".modified", exportStart);
+        workitem.setItemValue(watermark + ".count", currentIds.size());
+        workitem.setItemValue(watermark + ".hash", computeMemberHash(currentIds));
+    }
+
+    /**
+     * Loads the $uniqueid of all members of a data group. Only document stubs are
+     * loaded.
+     * 
+     * @throws QueryException
+     */
+    private Set<String> loadMemberIds(String uniqueid) throws QueryException {
+        Set<String> result = new HashSet<String>();
+        int page = 0;
+        while (true) {
+            List<ItemCollection> stubs = dataGroupService.loadData(uniqueid, 500, page, "$created", false, true);
+            for (ItemCollection stub : stubs) {
+                result.add(stub.getUniqueID());
+            }
+            if (stubs.size() < 500) {
+                break;
+            }
+            page++;
+        }
+        return result;
+    }
 
-                // cut last separator...
-                if (line.length() > 0) {
-                    line = line.substring(0, line.length() - separator.length());
+    /**
+     * Merges the changes of a delta export into the previous export file. The rows
+     * of the previous export are matched by the export index. Removed rows are
+     * skipped, changed rows are replaced and added rows are appended.
+     * 
+     * @return the merged FileData or null if the previous export does not match
+     *         the export index
+     * @throws PluginException
+     */
+    private FileData mergeCSV(ItemCollection workitem, String targetname, CSVLayout layout,
+            Collection<String> previousIds, Map<String, String> changedRows, Set<String> removedIds,
+            List<String> addedIds) throws PluginException {
+        byte[] previousContent = new byte[0];
+        if (previousIds.size() > 0) {
+            FileData previousExport = dataViewService.loadFileData(workitem, targetname);
+            if (previousExport == null || previousExport.getContent() == null) {
+                return null;
+            }
+            previousContent = previousExport.getContent();
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(previousContent.length, 65536));
+        try (Reader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(previousContent), StandardCharsets.UTF_8));
+                Writer writer = new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8),
+                        65536)) {
+            StringBuilder record = new StringBuilder(256);
+            // replace the header
+            readCSVRecord(reader, record);
+            record.setLength(0);
+            layout.appendHeader(record);
+            writer.append(record).append(System.lineSeparator());
+            for (String id : previousIds) {
+                if (!readCSVRecord(reader, record)) {
+                    return null;
                 }
+                if (removedIds.contains(id)) {
+                    continue;
+                }
+                String changedRow = changedRows.get(id);
+                writer.append(changedRow != null ? changedRow : record).append(System.lineSeparator());
+            }
+            if (readCSVRecord(reader, record)) {
+                return null;
+            }
+            for (String id : addedIds) {
+                writer.append(changedRows.get(id)).append(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            throw new PluginException(DataGroupAdapter.class.getName(),
+                    DataGroupService.API_ERROR, "⚠️ Failed to merge CSV export: " + e.getMessage(), e);
+        }
+        return new FileData(targetname, buffer.toByteArray(), "application/text", null);
+    }
 
-                // add line
-                writer.println(line);
+    /**
+     * Reads the next CSV record into the given buffer. Line breaks inside of
+     * quoted fields are part of the record. The line terminator is not included.
+     * 
+     * @return false if the end of the stream is reached
+     */
+    private static boolean readCSVRecord(Reader reader, StringBuilder record) throws IOException {
+        record.setLength(0);
+        boolean quoted = false;
+        int c = reader.read();
+        if (c == -1) {
+            return false;
+        }
+        while (c != -1) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == '\n' || c == '\r')) {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                return true;
             }
+            record.append((char) c);
+            c = reader.read();
+        }
+        return true;
+    }
 
-            // next page
-            page++;
+    /**
+     * Loads the $uniqueid and column hash of each row of the last export from the
+     * index file. The entries are returned in the row order of the export. An
+     * entry without a hash is returned with the hash 0, so the row is exported as
+     * changed.
+     */
+    private Map<String, Long> loadExportIndex(ItemCollection workitem, String indexName) {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        FileData fileData = dataViewService.loadFileData(workitem, indexName);
+        if (fileData != null && fileData.getContent() != null) {
+            for (String entry : new String(fileData.getContent(), StandardCharsets.UTF_8).split("\n")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                int pos = entry.indexOf(';');
+                long hash = 0;
+                if (pos > 0) {
+                    try {
+                        hash = Long.parseUnsignedLong(entry.substring(pos + 1).trim(), 16);
+                    } catch (NumberFormatException e) {
+                        // export the row again
+                    }
+                    entry = entry.substring(0, pos);
+                }
+                result.put(entry.trim(), hash);
+            }
         }
+        return result;
+    }
 
-        writer.flush();
-        writer.close();
+    /**
+     * Computes an order independent hash of a member set. Each $uniqueid is hashed
+     * with FNV-1a (64bit) and the hashes are combined with XOR.
+     */
+    private static long computeMemberHash(Collection<String> uniqueIds) {
+        long result = 0;
+        for (String id : uniqueIds) {
+            result ^= computeHash(id);
+        }
+        return result;
+    }
 
-        return byteArrayOutputStream.toByteArray();
+    /**
+     * Computes the FNV-1a (64bit) hash of a character sequence.
+     */
+    private static long computeHash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     /**
-     * Escapes CSV fields by wrapping them in quotes if they contain
-     * separator, newline, or quote characters
+     * Returns the file name of a delta export - e.g. 'my-export-delta.csv'
      */
-    private String escapeCSVField(String field) {
-        if (field == null) {
-            return "";
+    private static String computeDeltaFileName(String targetname) {
+        int pos = targetname.lastIndexOf('.');
+        if (pos > 0) {
+            return targetname.substring(0, pos) + "-delta" + targetname.substring(pos);
         }
+        return targetname + "-delta";
+    }
 
-        // If field contains separator, newline, or quotes, wrap in quotes
-        if (field.contains(",") || field.contains(";") || field.contains("\n") ||
-                field.contains("\r") || field.contains("\"")) {
-            // Escape existing quotes by doubling them
-            return "\"" + field.replace("\"", "\"\"") + "\"";
+    /**
+     * Formats a single item value of a workitem based on the item type and the
+     * optional format.
+     */
+    private String formatCSVValue(ItemCollection dataWorkitem, String type, String name, String format,
+            SimpleDateFormat dateFormat) {
+        boolean hasFormat = format != null && !format.isEmpty();
+        switch (type) {
+            case "xs:double":
+                double _double = dataWorkitem.getItemValueDouble(name);
+                return hasFormat ? String.format(format, _double) : String.valueOf(_double);
+
+            case "xs:float":
+                float _float = dataWorkitem.getItemValueFloat(name);
+                return hasFormat ? String.format(format, _float) : String.valueOf(_float);
+
+            case "xs:int":
+                int _int = dataWorkitem.getItemValueInteger(name);
+                return hasFormat ? String.format(format, _int) : String.valueOf(_int);
+
+            case "xs:date":
+                Date _date = dataWorkitem.getItemValueDate(name);
+                if (_date == null) {
+                    return "";
+                }
+                return dateFormat != null ? dateFormat.format(_date) : _date.toString();
+
+            default:
+                // string
+                String value = dataWorkitem.getItemValueString(name);
+                return hasFormat ? String.format(format, value) : value;
         }
+    }
 
-        return field;
+    /**
+     * Appends a CSV field to the given line. The field is wrapped in quotes if it
+     * contains a separator, newline, or quote characters. Existing quotes are
+     * escaped by doubling them.
+     */
+    private void appendCSVField(StringBuilder line, String field) {
+        if (field == null || field.isEmpty()) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == ';' || c == '\n' || c == '\r' || c == '"') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            line.append(field);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
     }
 
     /**
-     * Writes a Excel File into a bye array based on the given ViewItems definition
-     * and the data collection
+     * Creates an Excel export of all workitems of a data group.
+     * <p>
+     * By default the data is loaded in one dataset limited to
+     * DataViewService.MAX_ROWS. If the option 'stream' is set, the data is paged in
+     * the sort order of the data view and streamed into the workbook without a row
+     * limit. In this mode no DataViewExportEvent is fired.
      * 
-     * @param data
      * @throws QueryException
      * @throws PluginException
      */
-    private FileData exportPoi(ItemCollection workitem, ItemCollection dataViewDefinition)
+    private FileData exportPoi(ItemCollection workitem, ItemCollection dataViewDefinition, boolean stream)
             throws QueryException, PluginException {
         String uniqueid = workitem.getUniqueID();
 
@@ -355,10 +739,7 @@ public class DataGroupExportAdapter implements SignalAdapter {
         if (sortBy.isEmpty()) {
             sortBy = "$modified"; // default
         }
-        List<ItemCollection> workitems = dataGroupService.loadData(uniqueid, DataViewService.MAX_ROWS, 0, sortBy, false,
-                false);
-
-        FileData fileDataExport = dataViewService.poiExport(workitems, dataViewDefinition, viewItemDefinitions);
+        boolean sortReverse = dataViewDefinition.getItemValueBoolean("sort.reverse");
 
         // create a temp event
         ItemCollection event = new ItemCollection().setItemValue("txtActivityResult",
@@ -366,9 +747,73 @@ public class DataGroupExportAdapter implements SignalAdapter {
         ItemCollection poiConfig = workflowService.evalWorkflowResult(event, "poi-update", dataViewDefinition,
                 false);
 
+        if (stream) {
+            return dataViewService.poiExportStream(dataGroupService.buildDataQuery(uniqueid), sortBy, sortReverse,
+                    dataViewDefinition, viewItemDefinitions, workitem, poiConfig);
+        }
+
+        List<ItemCollection> workitems = dataGroupService.loadData(uniqueid, DataViewService.MAX_ROWS, 0, sortBy,
+                sortReverse, false);
+        if (workitems.size() >= DataViewService.MAX_ROWS) {
+            logger.warning("│   ├── ⚠️ export limited to " + DataViewService.MAX_ROWS
+                    + " rows - set <stream>true</stream> to export all data!");
+        }
+
+        FileData fileDataExport = dataViewService.poiExport(workitems, dataViewDefinition, viewItemDefinitions);
         DataViewPOIHelper.poiUpdate(workitem, fileDataExport, poiConfig, workflowService);
 
         return fileDataExport;
 
     }
+
+    /**
+     * The CSVLayout holds the column definitions of a data view resolved once for
+     * an export.
+     */
+    private class CSVLayout {
+        private final String separator;
+        private final String[] labels;
+        private final String[] types;
+        private final String[] names;
+        private final String[] formats;
+        private final SimpleDateFormat[] dateFormats;
+
+        CSVLayout(List<ItemCollection> viewItemDefinitions, String separator) {
+            this.separator = separator;
+            int columns = viewItemDefinitions.size();
+            labels = new String[columns];
+            types = new String[columns];
+            names = new String[columns];
+            formats = new String[columns];
+            dateFormats = new SimpleDateFormat[columns];
+            for (int i = 0; i < columns; i++) {
+                ItemCollection itemDef = viewItemDefinitions.get(i);
+                labels[i] = itemDef.getItemValueString("item.label");
+                types[i] = itemDef.getItemValueString("item.type");
+                names[i] = itemDef.getItemValueString("item.name");
+                formats[i] = itemDef.getItemValueString("item.format"); // optional
+                if ("xs:date".equals(types[i]) && !formats[i].isEmpty()) {
+                    dateFormats[i] = new SimpleDateFormat(formats[i]);
+                }
+            }
+        }
+
+        void appendHeader(StringBuilder line) {
+            for (int i = 0; i < labels.length; i++) {
+                if (i > 0) {
+                    line.append(separator);
+                }
+                appendCSVField(line, labels[i]);
+            }
+        }
+
+        void appendRow(StringBuilder line, ItemCollection dataWorkitem) {
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    line.append(separator);
+                }
+                appendCSVField(line, formatCSVValue(dataWorkitem, types[i], names[i], formats[i], dateFormats[i]));
+            }
+        }
+    }
 }
@@ -15,13 +15,13 @@
 package org.imixs.workflow.datagroup;
 
 import java.io.Serializable;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.StringTokenizer;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.dataview.DataViewService;
 import org.imixs.workflow.engine.DocumentService;
 import org.imixs.workflow.engine.WorkflowService;
 import org.imixs.workflow.exceptions.ModelException;
@@ -61,6 +61,9 @@ public class DataGroupService implements Serializable {
     @Inject
     protected DocumentService documentService;
 
+    @Inject
+    protected DataViewService dataViewService;
+
     /**
      * Helper method verifies all data groups and returns the latest for the
      * given key name. If no data group exists the method returns null.
@@ -152,31 +155,7 @@ public class DataGroupService implements Serializable {
     protected void copyItemList(String items, ItemCollection source, ItemCollection target) {
         // clone the field list...
         logger.info("copy itemlist: " + items);
-        StringTokenizer st = new StringTokenizer(items, ",");
-        while (st.hasMoreTokens()) {
-            String field = st.nextToken().trim();
-
-            // test if field is a reg ex
-            if (field.startsWith("(") && field.endsWith(")")) {
-                Pattern itemPattern = Pattern.compile(field);
-                Map<String, List<Object>> map = source.getAllItems();
-                for (String itemName : map.keySet()) {
-                    if (itemPattern.matcher(itemName).find()) {
-                        target.replaceItemValue(itemName, source.getItemValue(itemName));
-                    }
-                }
-
-            } else {
-                // default behavior without reg ex
-                int pos = field.indexOf('|');
-                if (pos > -1) {
-                    target.replaceItemValue(field.substring(pos + 1).trim(),
-                            source.getItemValue(field.substring(0, pos).trim()));
-                } else {
-                    target.replaceItemValue(field, source.getItemValue(field));
-                }
-            }
-        }
+        ItemCopyPlan.compile(items).apply(source, target);
     }
 
     /**
@@ -191,11 +170,7 @@ public class DataGroupService implements Serializable {
             boolean sortReverse, boolean loadStubs) throws QueryException {
 
         // select all references.....
-
-        String query = "(";
-        query = " (type:\"workitem\" OR type:\"workitemarchive\") AND (" + DataGroupService.ITEM_WORKITEMREF + ":\""
-                + uniqueId + "\")";
-
+        String query = buildDataQuery(uniqueId);
         logger.fine("Query= " + query);
 
         List<ItemCollection> result = null;
@@ -208,4 +183,54 @@ public class DataGroupService implements Serializable {
         return result;
     }
 
+    /**
+     * Loads the workitems of a data group projected to the items of a data view.
+     * If all view items are stored in the search index, only document stubs are
+     * loaded instead of the full documents.
+     * 
+     * @param uniqueId            - uniqueId of the data group
+     * @param viewItemDefinitions - the view columns to be loaded
+     * @return list of workitems
+     * @throws QueryException
+     */
+    public List<ItemCollection> loadData(String uniqueId, int pageSize, int pageIndex, String sortBy,
+            boolean sortReverse, List<ItemCollection> viewItemDefinitions) throws QueryException {
+        return dataViewService.findProjection(buildDataQuery(uniqueId), pageSize, pageIndex, sortBy, sortReverse,
+                viewItemDefinitions);
+    }
+
+    /**
+     * Loads all workitems of a data group modified since a given date projected to
+     * the items of a data view. The date is compared in seconds resolution and is
+     * inclusive.
+     * 
+     * @param uniqueId            - uniqueId of the data group
+     * @param since               - modified since, if null all workitems are
+     *                            returned
+     * @param viewItemDefinitions - the view columns to be loaded
+     * @return list of workitems
+     * @throws QueryException
+     */
+    public List<ItemCollection> loadDataModifiedSince(String uniqueId, Date since, int pageSize, int pageIndex,
+            List<ItemCollection> viewItemDefinitions) throws QueryException {
+        String query = buildDataQuery(uniqueId);
+        if (since != null) {
+            SimpleDateFormat dateformat = new SimpleDateFormat("yyyyMMddHHmmss");
+            query = query + " AND ($modified:[" + dateformat.format(since) + " TO 99991231235959])";
+        }
+        logger.fine("Query= " + query);
+        return dataViewService.findProjection(query, pageSize, pageIndex, "$created", false, viewItemDefinitions);
+    }
+
+    /**
+     * Returns the search query selecting all workitems assigned to a data group.
+     * 
+     * @param uniqueId - uniqueId of the data group
+     * @return search query
+     */
+    public String buildDataQuery(String uniqueId) {
+        return " (type:\"workitem\" OR type:\"workitemarchive\") AND (" + DataGroupService.ITEM_WORKITEMREF + ":\""
+                + uniqueId + "\")";
+    }
+
 }
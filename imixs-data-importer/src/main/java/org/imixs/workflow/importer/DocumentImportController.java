@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.WorkflowKernel;
 import org.imixs.workflow.engine.scheduler.Scheduler;
 import org.imixs.workflow.engine.scheduler.SchedulerController;
 import org.imixs.workflow.engine.scheduler.SchedulerService;
@@ -160,6 +161,7 @@ public class DocumentImportController extends SchedulerController {
         }
         source = new ItemCollection();
         source.setItemValue("index", sources.size());
+        source.setItemValue(DocumentImportService.SOURCE_ITEM_ID, WorkflowKernel.generateUniqueID());
         // itemCol.replaceItemValue("type", type);
         sources.add(source);
     }
@@ -74,6 +74,8 @@ public class DocumentImportEvent {
     public static final int PROCESSING_ERROR = 2;
 
     private int result;
+    private int documentCount = -1;
+    private long duration = 0;
     private List<String> messages;
     private ItemCollection source;
 
@@ -95,7 +97,34 @@ public class DocumentImportEvent {
         this.result = result;
     }
 
-    public void appendMessage(String message) {
+    /**
+     * Adds the number of documents imported, updated or deleted by an observer.
+     * The count is used to adapt the polling interval of the source.
+     */
+    public synchronized void addDocumentCount(int count) {
+        documentCount = Math.max(documentCount, 0) + count;
+    }
+
+    /**
+     * Returns the number of documents imported, updated or deleted or -1 if no
+     * observer reported a count.
+     */
+    public synchronized int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Returns the processing time of the source in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    public synchronized void appendMessage(String message) {
         messages.add(message);
     }
 
@@ -103,6 +132,14 @@ public class DocumentImportEvent {
         return messages;
     }
 
+    /**
+     * Returns a copy of the current messages. The method can be called while an
+     * observer is still appending messages in another thread.
+     */
+    public synchronized List<String> copyMessages() {
+        return new ArrayList<String>(messages);
+    }
+
     public void setMessages(List<String> messages) {
         this.messages = messages;
     }
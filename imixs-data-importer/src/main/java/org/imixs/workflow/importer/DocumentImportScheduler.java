@@ -23,8 +23,19 @@
 package org.imixs.workflow.importer;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.imixs.workflow.ItemCollection;
@@ -33,7 +44,9 @@ import org.imixs.workflow.engine.scheduler.SchedulerException;
 import org.imixs.workflow.engine.scheduler.SchedulerService;
 import org.imixs.workflow.exceptions.QueryException;
 
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 
@@ -41,6 +54,26 @@ import jakarta.inject.Inject;
  * The DocumentImportScheduler iterates over all source definition and sends a
  * DocumentImportEvent to process the source by an external service
  * implementation.
+ * <p>
+ * By default the sources are processed one after another. With the property
+ * 'importer.concurrency' in the scheduler definition the sources are processed
+ * concurrently by a ManagedExecutorService. The optional properties
+ * 'importer.source.timeout' and 'importer.timeout' define the timeout in
+ * seconds for a single source and for the whole run. The log messages and
+ * results are merged in the order of the sources.
+ * <p>
+ * A source with the option 'interval' is only processed if it is due.
+ * <p>
+ * A canceled source can not be stopped if the import does not respond to the
+ * interrupt. Such a source is skipped by the following runs until the import
+ * has actually finished.
+ * <p>
+ * The log of each run is bounded. The full log messages and a structured entry
+ * per source are stored in a separate log document. The property
+ * 'importer.log.keep' defines the number of log documents to keep.
+ * 
+ * @see DocumentImportService#updateSchedule(ItemCollection, DocumentImportEvent,
+ *      Date)
  * 
  * @see SchedulerService
  * @author rsoika
@@ -49,6 +82,10 @@ import jakarta.inject.Inject;
 public class DocumentImportScheduler implements Scheduler {
 
     public static final String DOCUMENT_IMPORTER_NAME = "DOCUMENT_IMPORTER";
+    public static final String PROPERTY_CONCURRENCY = "importer.concurrency";
+    public static final String PROPERTY_SOURCE_TIMEOUT = "importer.source.timeout";
+    public static final String PROPERTY_TIMEOUT = "importer.timeout";
+    public static final String PROPERTY_LOG_KEEP = "importer.log.keep";
 
     @EJB
     DocumentImportService documentImportService;
@@ -56,6 +93,17 @@ public class DocumentImportScheduler implements Scheduler {
     @Inject
     protected Event<DocumentImportEvent> importEvents;
 
+    @Resource
+    ManagedExecutorService managedExecutorService;
+
+    // task states of a concurrent source
+    private static final int TASK_PENDING = 0;
+    private static final int TASK_STARTED = 1;
+    private static final int TASK_CANCELED = 2;
+
+    // ids of sources still processed by a task - shared by all runs
+    private static final Set<String> runningSources = ConcurrentHashMap.newKeySet();
+
     private static Logger logger = Logger.getLogger(DocumentImportScheduler.class.getName());
 
     /**
@@ -79,17 +127,71 @@ public class DocumentImportScheduler implements Scheduler {
             if (sources.size() > 0) {
                 documentImportService.logMessage("Document import starting - " + sources.size() + " sources found...",
                         configuration);
-                for (ItemCollection source : sources) {
-                    // Finally fire the DocumentImportEvent. This allows CDI Observers to process
-                    // the import
-                    DocumentImportEvent importEvent = new DocumentImportEvent(source);
-                    importEvents.fire(importEvent);
-                    // append all messages....
-                    configuration.appendItemValue(Scheduler.ITEM_LOGMESSAGE, importEvent.getMessages());
-                    if (importEvent.getResult() == DocumentImportEvent.PROCESSING_ERROR) {
+                // select all sources due in this run
+                Date now = new Date();
+                List<ItemCollection> dueSources = new ArrayList<ItemCollection>();
+                List<Integer> dueIndexes = new ArrayList<Integer>();
+                for (int i = 0; i < sources.size(); i++) {
+                    String sourceId = sources.get(i).getItemValueString(DocumentImportService.SOURCE_ITEM_ID);
+                    if (runningSources.contains(sourceId)) {
+                        documentImportService.logMessage(
+                                "...source " + i + " still running from a previous run - skipped", configuration);
+                        continue;
+                    }
+                    if (documentImportService.isDue(sources.get(i), now)) {
+                        dueSources.add(sources.get(i));
+                        dueIndexes.add(i);
+                    }
+                }
+                if (dueSources.size() < sources.size()) {
+                    documentImportService.logMessage(
+                            "..." + (sources.size() - dueSources.size()) + " sources not due - skipped", configuration);
+                }
+
+                Properties properties = documentImportService.getSchedulerProperties(configuration);
+                int concurrency = getIntProperty(properties, PROPERTY_CONCURRENCY, 1);
+                DocumentImportEvent[] events;
+                if (concurrency > 1 && managedExecutorService != null) {
+                    events = fireEventsConcurrent(dueSources, concurrency,
+                            getIntProperty(properties, PROPERTY_SOURCE_TIMEOUT, 0) * 1000L,
+                            getIntProperty(properties, PROPERTY_TIMEOUT, 0) * 1000L, configuration);
+                } else {
+                    events = new DocumentImportEvent[dueSources.size()];
+                    for (int i = 0; i < dueSources.size(); i++) {
+                        // Finally fire the DocumentImportEvent. This allows CDI Observers to process
+                        // the import
+                        long start = System.currentTimeMillis();
+                        events[i] = new DocumentImportEvent(dueSources.get(i));
+                        importEvents.fire(events[i]);
+                        events[i].setDuration(System.currentTimeMillis() - start);
+                    }
+                }
+
+                // append all messages in the order of the sources....
+                List<String> runMessages = new ArrayList<String>();
+                List<Map<String, Object>> logEntries = new ArrayList<Map<String, Object>>();
+                for (int i = 0; i < events.length; i++) {
+                    if (events[i] == null) {
+                        String message = "├── ⚠️ source " + dueIndexes.get(i) + " skipped - deadline exceeded";
+                        documentImportService.appendLogMessages(List.of(message), configuration);
+                        runMessages.add(message);
+                        continue;
+                    }
+                    List<String> messages = events[i].copyMessages();
+                    documentImportService.appendLogMessages(messages, configuration);
+                    runMessages.addAll(messages);
+                    if (events[i].getResult() == DocumentImportEvent.PROCESSING_ERROR) {
                         logger.severe("...Document Import Error");
                     }
+                    logEntries.add(documentImportService.createLogEntry(dueIndexes.get(i), events[i], now));
+                    // compute the next due time
+                    documentImportService.updateSchedule(dueSources.get(i), events[i], now);
+                    sources.set(dueIndexes.get(i), dueSources.get(i));
                 }
+                // store the structured log entries and the full log of this run
+                documentImportService.writeImportLog(logEntries, runMessages,
+                        getIntProperty(properties, PROPERTY_LOG_KEEP, DocumentImportService.DEFAULT_LOG_KEEP),
+                        configuration);
 
                 // update sources (a CDI bean may have added new data....)
                 // convert the option ItemCollection elements into a List of Map
@@ -109,4 +211,172 @@ public class DocumentImportScheduler implements Scheduler {
         return configuration;
     }
 
+    /**
+     * This method fires the DocumentImportEvents concurrently. At most
+     * 'concurrency' sources are processed at the same time. A source exceeding
+     * the source timeout or the overall deadline is canceled and its source
+     * object is reset to the state before the run. Sources not started before
+     * the deadline are skipped.
+     * <p>
+     * A canceled import may still be running. The source is marked as running
+     * until the task has finished, so following runs skip the source. Messages
+     * added after the timeout are written to the server log.
+     * <p>
+     * The events are returned in the order of the sources, independent of the
+     * completion order.
+     * 
+     * @param sources       - list of sources, timed out sources are replaced
+     * @param concurrency   - max number of concurrent sources
+     * @param sourceTimeout - timeout for a single source in milliseconds (0 = no
+     *                      timeout)
+     * @param timeout       - deadline for the run in milliseconds (0 = no
+     *                      deadline)
+     * @return the events of all sources, null for skipped sources
+     * @throws SchedulerException
+     */
+    protected DocumentImportEvent[] fireEventsConcurrent(List<ItemCollection> sources, int concurrency, long sourceTimeout,
+            long timeout, ItemCollection configuration) throws SchedulerException {
+        int size = sources.size();
+        DocumentImportEvent[] events = new DocumentImportEvent[size];
+        ItemCollection[] snapshots = new ItemCollection[size];
+        long[] deadlines = new long[size];
+        long[] started = new long[size];
+        boolean[] running = new boolean[size];
+        AtomicInteger[] states = new AtomicInteger[size];
+        String[] sourceIds = new String[size];
+        Map<Future<Integer>, Integer> futures = new HashMap<Future<Integer>, Integer>();
+        CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>(
+                managedExecutorService);
+        long runDeadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+        int next = 0;
+        int active = 0;
+
+        documentImportService.logMessage("...processing sources concurrently (concurrency=" + concurrency + ")",
+                configuration);
+        try {
+            while (next < size || active > 0) {
+                long now = System.currentTimeMillis();
+                // dispatch the next sources
+                while (active < concurrency && next < size && now < runDeadline) {
+                    final int index = next++;
+                    snapshots[index] = (ItemCollection) sources.get(index).clone();
+                    events[index] = new DocumentImportEvent(sources.get(index));
+                    deadlines[index] = sourceTimeout > 0 ? Math.min(now + sourceTimeout, runDeadline) : runDeadline;
+                    started[index] = now;
+                    states[index] = new AtomicInteger(TASK_PENDING);
+                    sourceIds[index] = sources.get(index).getItemValueString(DocumentImportService.SOURCE_ITEM_ID);
+                    runningSources.add(sourceIds[index]);
+                    final DocumentImportEvent event = events[index];
+                    final AtomicInteger state = states[index];
+                    final String sourceId = sourceIds[index];
+                    futures.put(completionService.submit(() -> {
+                        if (!state.compareAndSet(TASK_PENDING, TASK_STARTED)) {
+                            // canceled before start
+                            return index;
+                        }
+                        try {
+                            importEvents.fire(event);
+                        } finally {
+                            runningSources.remove(sourceId);
+                            if (state.get() == TASK_CANCELED) {
+                                logger.warning("...source " + index + " completed after timeout");
+                                for (String message : event.copyMessages()) {
+                                    logger.info(message);
+                                }
+                            }
+                        }
+                        return index;
+                    }), index);
+                    running[index] = true;
+                    active++;
+                }
+                if (active == 0) {
+                    // deadline reached
+                    break;
+                }
+
+                // wait for the next completed source or the next timeout
+                long nextDeadline = Long.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    if (running[i]) {
+                        nextDeadline = Math.min(nextDeadline, deadlines[i]);
+                    }
+                }
+                Future<Integer> done = completionService.poll(Math.max(nextDeadline - now, 0),
+                        TimeUnit.MILLISECONDS);
+                if (done != null) {
+                    int index = futures.get(done);
+                    if (running[index]) {
+                        running[index] = false;
+                        active--;
+                        events[index].setDuration(System.currentTimeMillis() - started[index]);
+                        try {
+                            done.get();
+                        } catch (ExecutionException e) {
+                            events[index].appendMessage("├── ⚠️ import failed: " + e.getCause());
+                            events[index].setResult(DocumentImportEvent.PROCESSING_ERROR);
+                        }
+                    }
+                }
+
+                // cancel sources exceeding the timeout
+                now = System.currentTimeMillis();
+                for (Map.Entry<Future<Integer>, Integer> entry : futures.entrySet()) {
+                    int index = entry.getValue();
+                    if (running[index] && now >= deadlines[index]) {
+                        cancel(entry.getKey(), states[index], sourceIds[index]);
+                        running[index] = false;
+                        active--;
+                        DocumentImportEvent timeoutEvent = new DocumentImportEvent(snapshots[index]);
+                        timeoutEvent.setMessages(events[index].copyMessages());
+                        timeoutEvent.appendMessage(
+                                "├── ⚠️ timeout exceeded - source still running, skipped until completed");
+                        timeoutEvent.setResult(DocumentImportEvent.PROCESSING_ERROR);
+                        timeoutEvent.setDuration(now - started[index]);
+                        events[index] = timeoutEvent;
+                        sources.set(index, snapshots[index]);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Map.Entry<Future<Integer>, Integer> entry : futures.entrySet()) {
+                int index = entry.getValue();
+                cancel(entry.getKey(), states[index], sourceIds[index]);
+            }
+            throw new SchedulerException("INTERRUPTED", "document import interrupted", e);
+        }
+        return events;
+    }
+
+    /**
+     * Cancels the task of a source. If the task was not started yet, the source is
+     * released immediately. Otherwise the source is released by the task when the
+     * import has finished.
+     */
+    private void cancel(Future<Integer> future, AtomicInteger state, String sourceId) {
+        if (state.compareAndSet(TASK_PENDING, TASK_CANCELED)) {
+            runningSources.remove(sourceId);
+        } else {
+            state.set(TASK_CANCELED);
+        }
+        future.cancel(true);
+    }
+
+    /**
+     * Returns a int value of a scheduler property or a default value
+     */
+    private int getIntProperty(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("...invalid scheduler property " + name + "=" + value);
+            return defaultValue;
+        }
+    }
+
 }
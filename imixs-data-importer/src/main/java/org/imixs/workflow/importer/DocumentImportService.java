@@ -23,15 +23,20 @@
 package org.imixs.workflow.importer;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Logger;
 
 import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.WorkflowKernel;
+import org.imixs.workflow.engine.DocumentService;
 import org.imixs.workflow.engine.WorkflowService;
 import org.imixs.workflow.engine.scheduler.Scheduler;
 import org.imixs.workflow.exceptions.PluginException;
+import org.imixs.workflow.exceptions.QueryException;
 
 import jakarta.ejb.EJB;
 import jakarta.ejb.LocalBean;
@@ -49,6 +54,7 @@ import jakarta.ejb.Stateless;
 public class DocumentImportService {
 
     public final static String ITEM_SOURCES = "sources";
+    public final static String SOURCE_ITEM_ID = "$uniqueid";
     public final static String SOURCE_ITEM_SERVER = "server";
     public final static String SOURCE_ITEM_PORT = "port";
     public final static String SOURCE_ITEM_USER = "user";
@@ -59,15 +65,28 @@ public class DocumentImportService {
     public final static String SOURCE_ITEM_MODELVERSION = "workflowmodel";
     public final static String SOURCE_ITEM_SELECTOR = "selector";
     public final static String SOURCE_ITEM_OPTIONS = "options";
+    public final static String SOURCE_ITEM_NEXTDUE = "import.nextdue";
+    public final static String SOURCE_ITEM_BACKOFF = "import.backoff";
+    public final static String OPTION_INTERVAL = "interval";
+    public final static String OPTION_INTERVAL_MAX = "interval.max";
+    public final static String TYPE_IMPORT_LOG = "documentimportlog";
+    public final static String ITEM_LOG_ENTRIES = "importer.log";
+    public final static int MAX_LOG_MESSAGES = 500;
+    public final static int MAX_LOG_ENTRIES = 100;
+    public final static int DEFAULT_LOG_KEEP = 30;
 
     private static Logger logger = Logger.getLogger(DocumentImportService.class.getName());
 
     @EJB
     WorkflowService workflowService;
 
+    @EJB
+    DocumentService documentService;
+
     /**
      * This method returns a list of ItemCollection objects representing the sources
-     * defined in a Importer configuration.
+     * defined in a Importer configuration. A source without an id is assigned a
+     * new unique id, stored with the next update of the configuration.
      *
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -81,6 +100,10 @@ public class DocumentImportService {
                 ItemCollection itemCol = new ItemCollection((Map) mapOderItem);
                 // update index....
                 itemCol.setItemValue("index", i);
+                // a stable id identifies the source independent of its position
+                if (itemCol.getItemValueString(SOURCE_ITEM_ID).isEmpty()) {
+                    itemCol.setItemValue(SOURCE_ITEM_ID, WorkflowKernel.generateUniqueID());
+                }
                 i++;
                 sources.add(itemCol);
             }
@@ -88,6 +111,60 @@ public class DocumentImportService {
         return sources;
     }
 
+    /**
+     * Returns true if the source is due. A source without a next due time is
+     * always due.
+     */
+    public boolean isDue(ItemCollection source, Date now) {
+        Date nextDue = source.getItemValueDate(SOURCE_ITEM_NEXTDUE);
+        return nextDue == null || !now.before(nextDue);
+    }
+
+    /**
+     * This method computes the next due time of a source with the option
+     * 'interval' (minutes). If the last run returned no documents, the interval is
+     * doubled up to the option 'interval.max' (default 16 x interval). If the
+     * source returned documents, failed or did not report a document count, the
+     * source is polled again after the base interval.
+     * <p>
+     * The back-off factor and next due time are stored in the source items
+     * 'import.backoff' and 'import.nextdue'.
+     */
+    public void updateSchedule(ItemCollection source, DocumentImportEvent event, Date now) {
+        Properties options = getOptionsProperties(source);
+        long interval = parseLong(options.getProperty(OPTION_INTERVAL));
+        if (interval <= 0) {
+            source.removeItem(SOURCE_ITEM_NEXTDUE);
+            source.removeItem(SOURCE_ITEM_BACKOFF);
+            return;
+        }
+        long maxInterval = parseLong(options.getProperty(OPTION_INTERVAL_MAX));
+        if (maxInterval < interval) {
+            maxInterval = interval * 16;
+        }
+        long backoff = 1;
+        if (event.getDocumentCount() == 0 && event.getResult() != DocumentImportEvent.PROCESSING_ERROR) {
+            backoff = Math.max(source.getItemValueInteger(SOURCE_ITEM_BACKOFF), 1) * 2;
+            backoff = Math.min(backoff, maxInterval / interval);
+        }
+        source.setItemValue(SOURCE_ITEM_BACKOFF, (int) backoff);
+        source.setItemValue(SOURCE_ITEM_NEXTDUE, new Date(now.getTime() + interval * backoff * 60000));
+        logger.fine("...next run of source " + source.getItemValueString(SOURCE_ITEM_SELECTOR) + " in "
+                + (interval * backoff) + " minutes");
+    }
+
+    private long parseLong(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("...invalid interval: " + value);
+            return 0;
+        }
+    }
+
     /**
      * Creates a new log entry and stores the message into an optional event
      * 
@@ -111,24 +188,130 @@ public class DocumentImportService {
      */
     public void logMessage(String message, ItemCollection config) {
         if (config != null) {
-            config.appendItemValueUnique(Scheduler.ITEM_LOGMESSAGE, message);
+            appendLogMessages(List.of(message), config);
         }
         logger.info(message);
 
     }
 
+    /**
+     * Appends messages to the item '_scheduler_logmessage' of a scheduler
+     * configuration. The number of messages is limited to MAX_LOG_MESSAGES. Further
+     * messages are only stored in the import log document.
+     * 
+     * @param messages
+     * @param config
+     */
+    public void appendLogMessages(List<String> messages, ItemCollection config) {
+        int size = config.getItemValue(Scheduler.ITEM_LOGMESSAGE).size();
+        if (size >= MAX_LOG_MESSAGES) {
+            return;
+        }
+        if (size + messages.size() < MAX_LOG_MESSAGES) {
+            // the ItemCollection modifies the list
+            config.appendItemValue(Scheduler.ITEM_LOGMESSAGE, new ArrayList<String>(messages));
+            return;
+        }
+        int free = MAX_LOG_MESSAGES - size - 1;
+        config.appendItemValue(Scheduler.ITEM_LOGMESSAGE, new ArrayList<String>(messages.subList(0, free)));
+        config.appendItemValue(Scheduler.ITEM_LOGMESSAGE,
+                "...log truncated - see import log document for all messages");
+    }
+
+    /**
+     * Creates a structured log entry for a processed source
+     * 
+     * @return map with the source index, type, selector, level, document count
+     *         and duration
+     */
+    public Map<String, Object> createLogEntry(int index, DocumentImportEvent event, Date date) {
+        Map<String, Object> entry = new HashMap<String, Object>();
+        entry.put("source", index);
+        entry.put("type", event.getSource().getItemValueString("type"));
+        entry.put("selector", event.getSource().getItemValueString(SOURCE_ITEM_SELECTOR));
+        entry.put("level", event.getResult() == DocumentImportEvent.PROCESSING_ERROR ? "ERROR" : "INFO");
+        entry.put("count", event.getDocumentCount());
+        entry.put("duration", event.getDuration());
+        entry.put("date", date);
+        return entry;
+    }
+
+    /**
+     * This method stores the log of a scheduler run. The structured log entries are
+     * added to a ring buffer in the item 'importer.log' of the configuration,
+     * limited to MAX_LOG_ENTRIES. The full log messages and log entries are stored
+     * in a separate log document of the type 'documentimportlog'. Only the latest
+     * 'keep' log documents of a configuration are kept.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void writeImportLog(List<Map<String, Object>> entries, List<String> messages, int keep,
+            ItemCollection config) {
+        // update ring buffer
+        List<Map> ringBuffer = new ArrayList<Map>();
+        for (Object entry : config.getItemValue(ITEM_LOG_ENTRIES)) {
+            if (entry instanceof Map) {
+                ringBuffer.add((Map) entry);
+            }
+        }
+        ringBuffer.addAll(entries);
+        if (ringBuffer.size() > MAX_LOG_ENTRIES) {
+            ringBuffer = new ArrayList<Map>(ringBuffer.subList(ringBuffer.size() - MAX_LOG_ENTRIES,
+                    ringBuffer.size()));
+        }
+        config.replaceItemValue(ITEM_LOG_ENTRIES, ringBuffer);
+
+        if (keep <= 0 || config.getUniqueID().isEmpty()) {
+            return;
+        }
+        // write log document
+        ItemCollection logDocument = new ItemCollection();
+        logDocument.setItemValue("type", TYPE_IMPORT_LOG);
+        logDocument.setItemValue("$nosnapshot", true);
+        logDocument.setItemValue(WorkflowService.UNIQUEIDREF, config.getUniqueID());
+        logDocument.setItemValue("name", config.getItemValueString(Scheduler.ITEM_SCHEDULER_NAME));
+        logDocument.setItemValue(ITEM_LOG_ENTRIES, entries);
+        logDocument.setItemValue(Scheduler.ITEM_LOGMESSAGE, messages);
+        documentService.save(logDocument);
+
+        // remove old log documents
+        String query = "(type:\"" + TYPE_IMPORT_LOG + "\" AND $uniqueidref:\"" + config.getUniqueID() + "\")";
+        try {
+            List<ItemCollection> logDocuments = documentService.find(query, keep + 10, 0, "$created", true);
+            for (int i = keep; i < logDocuments.size(); i++) {
+                documentService.remove(logDocuments.get(i));
+            }
+        } catch (QueryException e) {
+            logger.warning("...failed to rotate import log: " + e.getMessage());
+        }
+    }
+
     /**
      * This helper method evaluates the options and returns a Properties object
      * 
      * @throws PluginException
      */
     public Properties getOptionsProperties(ItemCollection source) {
-        Properties properties = new Properties();
-        String optionsText = source.getItemValueString(SOURCE_ITEM_OPTIONS);
+        logger.fine("...read source properties");
+        return parseProperties(source.getItemValueString(SOURCE_ITEM_OPTIONS));
+    }
 
+    /**
+     * This helper method returns the properties of the scheduler definition. Beside
+     * the calendar settings the definition can contain importer settings like
+     * 'importer.concurrency'.
+     */
+    public Properties getSchedulerProperties(ItemCollection configuration) {
+        List<String> definitions = configuration.getItemValueList(Scheduler.ITEM_SCHEDULER_DEFINITION, String.class);
+        return parseProperties(String.join("\n", definitions));
+    }
+
+    /**
+     * Parses a text with one property 'key=value' per line
+     */
+    private Properties parseProperties(String text) {
+        Properties properties = new Properties();
         // split in new lines
-        String[] options = optionsText.split("\n");
-        logger.fine("...read source properties");
+        String[] options = text.split("\n");
         for (String sProperty : options) {
             // remove \r
             sProperty = sProperty.replace("\r", "");
@@ -0,0 +1,202 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.workflow.importer.ftp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import org.imixs.workflow.exceptions.PluginException;
+
+/**
+ * The CSVColumnSchema defines the value types of CSV columns. The schema is
+ * defined in the source options by a property per column:
+ * 
+ * <pre>
+ * column.price=double
+ * column.amount=int
+ * column.active=boolean
+ * column.created=date:dd.MM.yyyy
+ * </pre>
+ * 
+ * Supported types are 'int', 'long', 'double', 'boolean', 'date:pattern' and
+ * 'string'. The parsers are created once per import and are thread safe, so
+ * the schema can be used by all workers of an import.
+ * <p>
+ * Empty values are stored as an empty item. A value which can not be converted
+ * is stored as a string and a warning is logged.
+ * 
+ * @author rsoika
+ *
+ */
+public class CSVColumnSchema {
+
+    public static final String OPTION_PREFIX = "column.";
+
+    private static Logger logger = Logger.getLogger(CSVColumnSchema.class.getName());
+
+    private final Map<String, Converter> converters = new HashMap<String, Converter>();
+    private final String definition;
+
+    /**
+     * A converter of a string value into a typed value
+     */
+    @FunctionalInterface
+    interface Converter {
+        Object convert(String value) throws Exception;
+    }
+
+    private CSVColumnSchema(Map<String, String> columnTypes) throws PluginException {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : columnTypes.entrySet()) {
+            converters.put(entry.getKey(), createConverter(entry.getKey(), entry.getValue()));
+            builder.append(entry.getKey()).append('=').append(entry.getValue()).append(';');
+        }
+        this.definition = builder.toString();
+    }
+
+    /**
+     * Parses the column definitions from the source options. The column names
+     * are normalized to the item names of the import ('_' prefix, lower case).
+     * 
+     * @return the column schema, which is empty if no column is defined
+     * @throws PluginException if a type is not supported
+     */
+    public static CSVColumnSchema parse(Properties options) throws PluginException {
+        // sorted, so the definition is stable
+        Map<String, String> columnTypes = new TreeMap<String, String>();
+        for (String key : options.stringPropertyNames()) {
+            if (key.startsWith(OPTION_PREFIX) && key.length() > OPTION_PREFIX.length()) {
+                String column = key.substring(OPTION_PREFIX.length()).trim().toLowerCase();
+                if (!column.startsWith("_")) {
+                    column = "_" + column;
+                }
+                columnTypes.put(column, options.getProperty(key).trim());
+            }
+        }
+        return new CSVColumnSchema(columnTypes);
+    }
+
+    /**
+     * Returns true if no column type is defined
+     */
+    public boolean isEmpty() {
+        return converters.isEmpty();
+    }
+
+    /**
+     * Returns a stable string of all column definitions. The definition is part of
+     * the record fingerprint, so a schema change updates all entities.
+     */
+    public String getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Converts the value of a column into the type defined by the schema. Columns
+     * without a type are returned as string.
+     * 
+     * @param column - item name of the column
+     * @param value  - trimmed csv value
+     * @return typed value or null if the value is empty
+     */
+    public Object convert(String column, String value) {
+        Converter converter = converters.get(column.toLowerCase());
+        if (converter == null) {
+            return value;
+        }
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return converter.convert(value);
+        } catch (Exception e) {
+            logger.warning("...invalid value '" + value + "' in column " + column + ": " + e.getMessage());
+            return value;
+        }
+    }
+
+    private Converter createConverter(String column, String type) throws PluginException {
+        String lowerType = type.toLowerCase();
+        if ("string".equals(lowerType)) {
+            return value -> value;
+        }
+        if ("int".equals(lowerType) || "integer".equals(lowerType)) {
+            return Integer::valueOf;
+        }
+        if ("long".equals(lowerType)) {
+            return Long::valueOf;
+        }
+        if ("double".equals(lowerType)) {
+            return Double::valueOf;
+        }
+        if ("boolean".equals(lowerType)) {
+            return CSVColumnSchema::parseBoolean;
+        }
+        if (lowerType.startsWith("date:")) {
+            DateTimeFormatter formatter;
+            try {
+                formatter = DateTimeFormatter.ofPattern(type.substring(5).trim());
+            } catch (IllegalArgumentException e) {
+                throw new PluginException(CSVColumnSchema.class.getName(), CSVImportService.CONFIG_ERROR,
+                        "Invalid date pattern for column '" + column + "': " + e.getMessage());
+            }
+            ZoneId zone = ZoneId.systemDefault();
+            return value -> {
+                TemporalAccessor temporal = formatter.parseBest(value, LocalDateTime::from, LocalDate::from);
+                if (temporal instanceof LocalDateTime) {
+                    return Date.from(((LocalDateTime) temporal).atZone(zone).toInstant());
+                }
+                return Date.from(((LocalDate) temporal).atStartOfDay(zone).toInstant());
+            };
+        }
+        throw new PluginException(CSVColumnSchema.class.getName(), CSVImportService.CONFIG_ERROR,
+                "Invalid type '" + type + "' for column '" + column
+                        + "' - supported types are int, long, double, boolean, date:pattern, string");
+    }
+
+    private static Boolean parseBoolean(String value) {
+        String lowerValue = value.toLowerCase();
+        if ("true".equals(lowerValue) || "yes".equals(lowerValue) || "1".equals(lowerValue)) {
+            return Boolean.TRUE;
+        }
+        if ("false".equals(lowerValue) || "no".equals(lowerValue) || "0".equals(lowerValue)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("boolean expected");
+    }
+}
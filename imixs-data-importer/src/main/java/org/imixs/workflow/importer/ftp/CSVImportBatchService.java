@@ -0,0 +1,98 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.workflow.importer.ftp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.engine.DocumentService;
+import org.imixs.workflow.engine.WorkflowService;
+import org.imixs.workflow.exceptions.AccessDeniedException;
+import org.imixs.workflow.exceptions.ModelException;
+import org.imixs.workflow.exceptions.PluginException;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.EJBException;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+
+/**
+ * The CSVImportBatchService writes a batch of imported entities in one single
+ * transaction. If one entity of the batch can not be processed or saved, the
+ * whole batch is rolled back by an EJBException. The caller is responsible to
+ * retry the entities of a failed batch one by one.
+ * 
+ * @see CSVImportService
+ * @author rsoika
+ *
+ */
+@Stateless
+@LocalBean
+public class CSVImportBatchService {
+
+    private static Logger logger = Logger.getLogger(CSVImportBatchService.class.getName());
+
+    @EJB
+    DocumentService documentService;
+
+    @EJB
+    WorkflowService workflowService;
+
+    /**
+     * Processes or saves a list of entities in a new transaction. If an eventID is
+     * given the entities are processed by the workflow engine, otherwise the
+     * entities are saved only.
+     * 
+     * @param entities - list of entities
+     * @param eventID  - optional workflow event
+     * @return list of the processed entities
+     * @throws EJBException if one entity failed - the transaction is rolled back
+     */
+    @TransactionAttribute(value = TransactionAttributeType.REQUIRES_NEW)
+    public List<ItemCollection> writeBatch(List<ItemCollection> entities, int eventID) {
+        List<ItemCollection> result = new ArrayList<ItemCollection>(entities.size());
+        try {
+            for (ItemCollection entity : entities) {
+                if (eventID > 0) {
+                    result.add(workflowService.processWorkItem(entity));
+                } else {
+                    result.add(documentService.save(entity));
+                }
+            }
+        } catch (AccessDeniedException | PluginException | ModelException e) {
+            logger.warning("batch write failed: " + e.getMessage());
+            throw new EJBException(e);
+        }
+        return result;
+    }
+}
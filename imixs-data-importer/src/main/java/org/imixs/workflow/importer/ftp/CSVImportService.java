@@ -28,9 +28,12 @@
 
 package org.imixs.workflow.importer.ftp;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -38,21 +41,35 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPSClient;
 import org.imixs.workflow.FileData;
 import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.WorkflowKernel;
 import org.imixs.workflow.engine.DocumentService;
 import org.imixs.workflow.engine.WorkflowService;
 import org.imixs.workflow.engine.index.UpdateService;
@@ -64,7 +81,9 @@ import org.imixs.workflow.exceptions.QueryException;
 import org.imixs.workflow.importer.DocumentImportEvent;
 import org.imixs.workflow.importer.DocumentImportService;
 
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJBException;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
@@ -86,6 +105,10 @@ public class CSVImportService {
     public static final String DATA_ERROR = "DATA_ERROR";
     public static final String CONFIG_ERROR = "CONFIG_ERROR";
     public static final String IMPORT_ERROR = "IMPORT_ERROR";
+    public static final String ITEM_FINGERPRINT = "document.import.fingerprint";
+    public static final String TYPE_IMPORT_INDEX = "csvimportindex";
+    public static final String IMPORT_INDEX_FILE = "csv-import.idx";
+    private static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
 
     private static Logger logger = Logger.getLogger(CSVImportService.class.getName());
 
@@ -101,6 +124,12 @@ public class CSVImportService {
     @Inject
     DocumentImportService documentImportService;
 
+    @Inject
+    CSVImportBatchService csvImportBatchService;
+
+    @Resource
+    ManagedExecutorService managedExecutorService;
+
     /**
      * This method reacts on a CDI ImportEvent and imports the data of a CSV file
      * form a ftp server.
@@ -185,45 +214,61 @@ public class CSVImportService {
                 encoding = "UTF-8";
             }
 
-            documentImportService.logMessage("│   ├── encoding=" + encoding, event);
-            FileData fileData = null;
-            // if ftp server is defined, load from server...
-            if (!ftpServer.isEmpty()) {
-                fileData = readFileDataFromFTP(ftpServer, csvSelector, encoding, event);
+            // get separator..
+            char separator = parseSeparator(sourceOptions.getProperty("separator"));
 
-            } else {
-                // default try import from local path
-                Path path = Paths.get(csvSelector);
-                String fileName = path.getFileName().toString();
-                byte[] fileContent = Files.readAllBytes(Paths.get(csvSelector));
-                fileData = new FileData(fileName, fileContent, null, null);
-            }
-
-            if (fileData != null) {
-                documentImportService
-                        .logMessage("│   ├── ⚙️ file '" + fileData.getName() + "' processing ▷ "
-                                + fileData.getContent().length + " bytes", event);
-
-                String lastChecksum = event.getSource().getItemValueString("csv.checksum");
-                // create checksum....
-
-                String newChecksum = fileData.generateMD5();
-                documentImportService.logMessage("│   ├── checksum=" + newChecksum, event);
-                if (lastChecksum.isEmpty() || !lastChecksum.equals(newChecksum)) {
-                    // read data....
-                    InputStream inputStream = new ByteArrayInputStream(fileData.getContent());
-                    String log = importData(inputStream, encoding, type, keyField, event);
-                    // update checksum
-                    event.getSource().setItemValue("csv.checksum", newChecksum);
-                    documentImportService.logMessage(log, event);
-                    documentImportService.logMessage("├── ✅ file import completed successful.", event);
+            documentImportService.logMessage("│   ├── encoding=" + encoding, event);
+            CSVFileInfo csvFile = null;
+            try {
+                // if ftp server is defined, load from server...
+                if (!ftpServer.isEmpty()) {
+                    csvFile = readFileFromFTP(ftpServer, csvSelector, encoding, event);
                 } else {
+                    // default try import from local path
+                    csvFile = readFileInfo(Paths.get(csvSelector));
+                }
+
+                if (csvFile != null && !isModified(csvFile, event)) {
+                    // file metadata unchanged - skip download and checksum
+                    documentImportService.logMessage("│   ├── modified=" + csvFile.modified + " size=" + csvFile.size,
+                            event);
+                    event.addDocumentCount(0);
                     documentImportService.logMessage("├── ✅ no data changes since last import.", event);
+                } else if (csvFile != null && csvFile.path != null) {
+                    documentImportService
+                            .logMessage("│   ├── ⚙️ file '" + Paths.get(csvSelector).getFileName() + "' processing ▷ "
+                                    + Files.size(csvFile.path) + " bytes", event);
+
+                    String lastChecksum = event.getSource().getItemValueString("csv.checksum");
+                    // create checksum....
+                    String newChecksum = computeChecksum(csvFile.path);
+                    documentImportService.logMessage("│   ├── checksum=" + newChecksum, event);
+                    if (lastChecksum.isEmpty() || !lastChecksum.equals(newChecksum)) {
+                        // read data....
+                        String log;
+                        try (InputStream inputStream = Files.newInputStream(csvFile.path)) {
+                            log = importData(inputStream, encoding, separator, type, keyField, event);
+                        }
+                        // update checksum
+                        event.getSource().setItemValue("csv.checksum", newChecksum);
+                        documentImportService.logMessage(log, event);
+                        documentImportService.logMessage("├── ✅ file import completed successful.", event);
+                    } else {
+                        event.addDocumentCount(0);
+                        documentImportService.logMessage("├── ✅ no data changes since last import.", event);
+                    }
+                    // update file metadata
+                    event.getSource().setItemValue("csv.mdtm", csvFile.modified);
+                    event.getSource().setItemValue("csv.size", csvFile.size);
+                } else {
+                    documentImportService.logMessage(
+                            "...Warning - invalid file content '" + csvSelector + "'", event);
+                }
+            } finally {
+                // remove the downloaded file
+                if (csvFile != null && csvFile.temporary) {
+                    deleteTempFile(csvFile.path);
                 }
-            } else {
-                documentImportService.logMessage(
-                        "...Warning - invalid file content '" + fileData.getName() + "' - file will be deleted!",
-                        event);
             }
         } catch (PluginException | NoSuchAlgorithmException | IOException e) {
             logger.severe("Data Error: " + e.getMessage());
@@ -238,15 +283,68 @@ public class CSVImportService {
         event.setResult(DocumentImportEvent.PROCESSING_COMPLETED);
     }
 
+    /**
+     * Computes the MD5 checksum of a file. The file is read as a stream, so the
+     * checksum of large files can be computed with a small constant heap. The
+     * checksum has the same format as {@link FileData#generateMD5()}.
+     * 
+     * @return MD5 checksum as upper case hex string
+     */
+    public static String computeChecksum(Path file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), md5)) {
+            byte[] buffer = new byte[65536];
+            while (in.read(buffer) != -1) {
+                // digest is updated by the stream
+            }
+        }
+        return HexFormat.of().withUpperCase().formatHex(md5.digest());
+    }
+
+    /**
+     * Returns the file info of a local file
+     */
+    protected CSVFileInfo readFileInfo(Path path) throws IOException {
+        CSVFileInfo result = new CSVFileInfo();
+        result.path = path;
+        result.modified = Files.getLastModifiedTime(path).toString();
+        result.size = Long.toString(Files.size(path));
+        return result;
+    }
+
+    /**
+     * This method compares the modification time and size of a file with the
+     * values stored in the source items 'csv.mdtm' and 'csv.size' of the last
+     * import. If no modification time is known, the file is treated as modified.
+     * 
+     * @return true if the file may have changed since the last import
+     */
+    protected boolean isModified(CSVFileInfo fileInfo, DocumentImportEvent event) {
+        if (fileInfo.modified == null || fileInfo.modified.isBlank() || fileInfo.size == null) {
+            return true;
+        }
+        return !fileInfo.modified.equals(event.getSource().getItemValueString("csv.mdtm"))
+                || !fileInfo.size.equals(event.getSource().getItemValueString("csv.size"));
+    }
+
     /**
      * Helper method to import the data source from a FTP server
      * 
-     * The method returns a byte array with the file raw data.
+     * The modification time and size of the remote file are read first with the
+     * FTP commands MDTM and SIZE. If both did not change since the last import,
+     * the file is not transferred and the path of the returned file info is null.
+     * <p>
+     * Otherwise the file is streamed from the server into a temporary file, so
+     * large files are not buffered in memory. The caller is responsible to delete
+     * the file.
+     * 
+     * @return file info or null if the transfer failed
      */
-    protected FileData readFileDataFromFTP(String ftpServer, String csvSelector, String encoding,
+    protected CSVFileInfo readFileFromFTP(String ftpServer, String csvSelector, String encoding,
             DocumentImportEvent event) {
         FTPClient ftpClient = null;
-        FileData fileData = null;
+        Path tempFile = null;
+        CSVFileInfo fileInfo = new CSVFileInfo();
 
         try {
             String ftpPort = event.getSource().getItemValueString(DocumentImportService.SOURCE_ITEM_PORT);
@@ -294,37 +392,50 @@ public class CSVImportService {
                         event);
 
                 logger.info("import file " + csvFilename + "...");
-                // String fullFileName = ftpPath + "/" + file.getName();
-                try (ByteArrayOutputStream is = new ByteArrayOutputStream();) {
-
-                    // because time stamps are not provided by all ftp servers and always in same
-                    // format we store the checksum of the file to test if the file has changed
-                    // since the last import
-                    ftpClient.retrieveFile(csvFilename, is);
-                    byte[] rawData = is.toByteArray();
-
-                    // Close Connection now
-                    try {
-                        logger.info("...document content read, closing FTP client.");
-                        ftpClient.logout();
-                        ftpClient.disconnect();
-                    } catch (IOException e) {
-                        documentImportService.logMessage(
-                                "│   ├── FTP error - failed to close connection after reading CSV File: "
-                                        + e.getMessage(),
-                                event);
-                        // we still can continue as we should already have read the file content...
+                // MDTM and SIZE are optional commands and may not be supported by the server
+                fileInfo.modified = ftpClient.getModificationTime(csvFilename);
+                fileInfo.size = ftpClient.getSize(csvFilename);
+                if (!isModified(fileInfo, event)) {
+                    logger.info("...file " + csvFilename + " not modified - skip download.");
+                    ftpClient.logout();
+                    ftpClient.disconnect();
+                    return fileInfo;
+                }
+                // because time stamps are not provided by all ftp servers and always in same
+                // format we store the checksum of the file to test if the file has changed
+                // since the last import
+                tempFile = Files.createTempFile("csv-import-", ".csv");
+                try (InputStream is = ftpClient.retrieveFileStream(csvFilename)) {
+                    if (is == null) {
+                        documentImportService.logMessage("│   ├── FTP file transfer failed (replyCode="
+                                + ftpClient.getReplyCode() + ") : " + csvFilename, event);
+                        Files.deleteIfExists(tempFile);
+                        event.setResult(DocumentImportEvent.PROCESSING_ERROR);
+                        return null;
                     }
-
-                    fileData = new FileData(file.getName(), rawData, null, null);
-
-                } catch (AccessDeniedException | ProcessingErrorException e) {
-
-                    documentImportService.logMessage("...FTP import failed: " + e.getMessage(), event);
+                    Files.copy(is, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                if (!ftpClient.completePendingCommand()) {
+                    documentImportService.logMessage("│   ├── FTP file transfer failed (replyCode="
+                            + ftpClient.getReplyCode() + ") : " + csvFilename, event);
+                    Files.deleteIfExists(tempFile);
                     event.setResult(DocumentImportEvent.PROCESSING_ERROR);
                     return null;
                 }
 
+                // Close Connection now
+                try {
+                    logger.info("...document content read, closing FTP client.");
+                    ftpClient.logout();
+                    ftpClient.disconnect();
+                } catch (IOException e) {
+                    documentImportService.logMessage(
+                            "│   ├── FTP error - failed to close connection after reading CSV File: "
+                                    + e.getMessage(),
+                            event);
+                    // we still can continue as we should already have read the file content...
+                }
+
             } else {
                 documentImportService.logMessage("│   ├── failed to change into working directory: " + csvFTPPath,
                         event);
@@ -332,6 +443,7 @@ public class CSVImportService {
 
         } catch (IOException e) {
             logger.severe("FTP I/O Error: " + e.getMessage());
+            deleteTempFile(tempFile);
             if (ftpClient.isConnected()) {
                 int r = ftpClient.getReplyCode();
                 logger.severe("FTP ReplyCode=" + r);
@@ -353,14 +465,30 @@ public class CSVImportService {
             } catch (IOException e) {
                 documentImportService.logMessage("│   ├── FTP file transfer failed: " + e.getMessage(), event);
                 event.setResult(DocumentImportEvent.PROCESSING_ERROR);
+                deleteTempFile(tempFile);
                 return null;
             }
         }
 
-        return fileData;
+        fileInfo.path = tempFile;
+        fileInfo.temporary = true;
+        return fileInfo;
 
     }
 
+    /**
+     * Deletes a temporary file if exists
+     */
+    private void deleteTempFile(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warning("...failed to delete temp file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * This method imports all entities from a csv file. The file must have one
      * header line.
@@ -390,13 +518,44 @@ public class CSVImportService {
      */
     public String importData(InputStream inputStream, String encoding, String type, String keyField,
             DocumentImportEvent event) throws PluginException {
+        return importData(inputStream, encoding, ';', type, keyField, event);
+    }
+
+    /**
+     * This method imports all entities from a csv file with a custom field
+     * separator. The file is read in a single pass by a {@link CSVRecordReader}.
+     * Quoted fields can contain separators and line breaks.
+     * <p>
+     * If the option 'batchsize' is greater than 1, new and changed entities are
+     * written in batches of batchsize entities per transaction and the index is
+     * flushed once per batch. If a batch fails, the entities of this batch are
+     * written again one by one, each in a new transaction.
+     * <p>
+     * If the option 'workers' is greater than 1, the entities and fingerprints
+     * are build by a pool of worker threads and the batches are written in
+     * parallel. The records are still compared in file order, so the duplicate
+     * detection is deterministic.
+     * 
+     * @see #importData(InputStream, String, String, String, DocumentImportEvent)
+     * @return ErrorMessage or empty String
+     * @throws PluginException
+     */
+    public String importData(InputStream inputStream, String encoding, char separator, String type,
+            String keyField, DocumentImportEvent event) throws PluginException {
 
         logger.fine("...starting csv data import...");
         String log = "";
         int line = 0;
-        String dataLine = null;
-        List<String> csvIndexCache = new ArrayList();
+        List<String> dataLine = null;
+        Set<String> csvIndexCache = new HashSet<String>();
         Map<String, RecordComparator> databaseCache = null;
+        Map<String, RecordComparator> importIndex = new HashMap<String, RecordComparator>();
+        List<ItemCollection> batchEntities = new ArrayList<ItemCollection>();
+        List<RecordComparator> batchRecords = new ArrayList<RecordComparator>();
+        RecordProducer producer = null;
+        BatchWriter batchWriter = null;
+        boolean indexChanged = false;
+        String query = null;
         int workitemsTotal = 0;
         int workitemsImported = 0;
         int workitemsUpdated = 0;
@@ -413,18 +572,27 @@ public class CSVImportService {
         if (encoding == null) {
             encoding = "UTF-8";
         }
+        Properties sourceOptions = documentImportService.getOptionsProperties(event.getSource());
+        int batchSize = getIntOption(sourceOptions, "batchsize", 0);
+        int workers = getIntOption(sourceOptions, "workers", 1);
+        CSVColumnSchema schema = CSVColumnSchema.parse(sourceOptions);
+        if (workers > 1 && managedExecutorService == null) {
+            logger.warning("...no ManagedExecutorService available - workers=1");
+            workers = 1;
+        }
+        if (workers > 1 && batchSize <= 1) {
+            batchSize = 100;
+        }
 
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(inputStream, encoding));
+            CSVRecordReader in = new CSVRecordReader(new InputStreamReader(inputStream, encoding), separator);
 
             // read first line containing the object type
-            String header = in.readLine();
-            if (!header.contains(";")) {
+            List<String> header = in.readRecord();
+            if (header == null || header.size() < 2) {
                 throw new PluginException(this.getClass().getName(), IMPORT_ERROR,
-                        "File Format not supported, fields must be separated by ';' ");
+                        "File Format not supported, fields must be separated by '" + separator + "' ");
             }
-            // String[] header1List = header1.split(";(?=([^\"]*\"[^\"]*\")*[^\"]*$)", 99);
-            // header1List = normalizeValueList(header1List);
             List<String> fields = parseFieldList(header);
 
             if (fields == null || fields.size() == 0) {
@@ -434,42 +602,40 @@ public class CSVImportService {
             if (type == null || type.isEmpty()) {
                 throw new PluginException(this.getClass().getName(), IMPORT_ERROR, "Missing type to import entities");
             }
-            databaseCache = readDocumentsFromDatabase(fields, type, event);
+            query = buildQuery(type, event);
+            databaseCache = loadImportIndex(query, event);
+            if (databaseCache == null) {
+                databaseCache = readDocumentsFromDatabase(fields, query);
+                indexChanged = true;
+            }
 
             logger.info("...object type=" + type);
             logger.info("...key field=" + keyField);
             line++;
+            producer = new RecordProducer(in, fields, type, keyField, databaseCache, schema, workers);
+            batchWriter = new BatchWriter(importIndex, modelVersion, workflowGroup, eventID, workers);
 
             // read content....
-            while ((dataLine = in.readLine()) != null) {
+            ParsedRecord parsedRecord;
+            while ((parsedRecord = producer.next()) != null) {
                 blockSize++;
-                line++;
+                line = parsedRecord.line;
+                dataLine = parsedRecord.values;
                 workitemsTotal++;
-                ItemCollection entity = readEntity(dataLine, fields, type, keyField);
-                if (entity == null) {
-                    logger.warning("...Incorrect data line: " + dataLine);
-                    continue;
-                }
+                RecordComparator record = parsedRecord.record;
 
                 // store id into cache
-                String keyItemValue = entity.getItemValueString("name");
+                String keyItemValue = record.id;
                 if (keyItemValue.isBlank()) {
                     logger.warning("KeyField '" + keyField + "' is empty - line:" + line);
                     continue;
                 }
-                if (csvIndexCache.contains(keyItemValue)) {
+                if (!csvIndexCache.add(keyItemValue)) {
                     logger.warning("...WARNING duplicate entry found: " + keyField + "=" + keyItemValue);
                     documentImportService
                             .logMessage("│   ├── ⚠️ duplicate entry found: " + keyField + "=" + keyItemValue, event);
                     continue;
                 }
-                csvIndexCache.add(keyItemValue);
-                // Add import Information
-                entity.setItemValue("document.import.type", event.getSource().getItemValue("type"));
-                entity.setItemValue("document.import.selector", event.getSource().getItemValue("selector"));
-                entity.setItemValue("document.import.options", event.getSource().getItemValue("options"));
-
-                RecordComparator record = new RecordComparator(entity, fields);
 
                 // test if entity already exists in database....
                 RecordComparator existingIndex = databaseCache.get(record.id);
@@ -477,22 +643,51 @@ public class CSVImportService {
                     // we have an existing record
                     // now let's see if the data has changed....
                     // no changes!
+                    importIndex.put(record.id, existingIndex);
                     continue;
                 }
-                if (existingIndex == null) {
+                ItemCollection entity = parsedRecord.entity;
+                if (entity == null) {
+                    logger.warning("...Incorrect data line: " + dataLine);
+                    continue;
+                }
+                // Add import Information
+                entity.setItemValue("document.import.type", event.getSource().getItemValue("type"));
+                entity.setItemValue("document.import.selector", event.getSource().getItemValue("selector"));
+                entity.setItemValue("document.import.options", event.getSource().getItemValue("options"));
+                ItemCollection existingEntity = null;
+                if (existingIndex != null) {
+                    existingEntity = documentService.load(existingIndex.uniqueId);
+                    if (existingEntity == null) {
+                        // the import index is outdated - the entity was removed in the meantime
+                        logger.warning("...entity " + existingIndex.uniqueId + " not found - creating new entity");
+                        indexChanged = true;
+                    }
+                }
+                if (existingEntity == null) {
                     // create a new entry...
                     entity.task(taskID);
-                    processEntity(entity, modelVersion, workflowGroup, eventID);
                     workitemsImported++;
                 } else {
                     // update existing entity...
                     logger.fine("update existing entity");
                     // copy all entries from the import into the existing entity
-                    ItemCollection existingEntity = documentService.load(existingIndex.uniqueId);
                     existingEntity.replaceAllItems(entity.getAllItems());
-                    processEntity(existingEntity, modelVersion, workflowGroup, eventID);
+                    entity = existingEntity;
                     workitemsUpdated++;
                 }
+                if (batchSize > 1) {
+                    batchEntities.add(entity);
+                    batchRecords.add(record);
+                    if (batchEntities.size() >= batchSize) {
+                        batchWriter.write(batchEntities, batchRecords);
+                        logger.info("│   ├── " + csvFileName + ": " + workitemsTotal + " entries read ("
+                                + workitemsImported + " imports , " + workitemsUpdated + " updates)");
+                    }
+                    continue;
+                }
+                entity = processEntity(entity, modelVersion, workflowGroup, eventID);
+                importIndex.put(record.id, new RecordComparator(record.id, entity.getUniqueID(), record.hash));
 
                 if (blockSize >= 100) {
                     blockSize = 0;
@@ -504,6 +699,10 @@ public class CSVImportService {
                 }
             }
 
+            // write the last batch
+            batchWriter.write(batchEntities, batchRecords);
+            batchWriter.close();
+
             logger.info("completed: " + workitemsTotal + " entries successful read");
 
         } catch (Exception e) {
@@ -515,6 +714,12 @@ public class CSVImportService {
         }
 
         finally {
+            if (producer != null) {
+                producer.cancel();
+            }
+            if (batchWriter != null) {
+                batchWriter.cancel();
+            }
             // Close the input stream
             try {
                 if (inputStream != null) {
@@ -526,17 +731,28 @@ public class CSVImportService {
         }
 
         // now we remove all existing entries no longer listed in the file
-        Set<String> databaseKeys = databaseCache.keySet();
-        for (String key : databaseKeys) {
-            if (!csvIndexCache.contains(key)) {
+        for (Map.Entry<String, RecordComparator> entry : databaseCache.entrySet()) {
+            if (!csvIndexCache.contains(entry.getKey())) {
                 // remove old record!
-                ItemCollection deprecatedEntity = documentService.load(databaseCache.get(key).uniqueId);
+                ItemCollection deprecatedEntity = documentService.load(entry.getValue().uniqueId);
+                if (deprecatedEntity == null) {
+                    // already removed
+                    indexChanged = true;
+                    continue;
+                }
                 documentService.remove(deprecatedEntity);
                 workitemsDeleted++;
             }
 
         }
 
+        // persist the import index for the next run
+        if (indexChanged || workitemsImported > 0 || workitemsUpdated > 0 || workitemsDeleted > 0
+                || importIndex.size() != databaseCache.size()) {
+            saveImportIndex(importIndex, query, event);
+        }
+
+        event.addDocumentCount(workitemsImported + workitemsUpdated + workitemsDeleted);
         log += "..." + workitemsTotal + " entries read -> " + workitemsImported + " new entries - " + workitemsUpdated
                 + " updates - " + workitemsDeleted + " deletions - " + workitemsFailed + " errors";
 
@@ -550,44 +766,34 @@ public class CSVImportService {
      * simple save.
      * 
      */
-    private void processEntity(ItemCollection entity, String modelVersion, String workflowGroup,
+    private ItemCollection processEntity(ItemCollection entity, String modelVersion, String workflowGroup,
             int eventID) {
         if (eventID > 0) {
             // process
             entity.model(modelVersion).workflowGroup(workflowGroup).event(eventID);
             try {
-                workflowService.processWorkItemByNewTransaction(entity);
+                return workflowService.processWorkItemByNewTransaction(entity);
             } catch (EJBException | AccessDeniedException | ProcessingErrorException | PluginException
                     | ModelException e) {
                 // processing failed so we perform a simple save!
                 logger.warning("Processing failed: " + e.getMessage());
-                documentService.saveByNewTransaction(entity);
+                return documentService.saveByNewTransaction(entity);
             }
         } else {
             // update
-            documentService.saveByNewTransaction(entity);
+            return documentService.saveByNewTransaction(entity);
         }
     }
 
     /**
-     * This helper method reads all existing documents and stores the hash index in
-     * a local map index.
+     * Builds the search query to select all existing entities of an import
+     * source.
      * 
-     * @return count of deletions
-     * @throws QueryException
      * @throws PluginException
      */
-    private Map<String, RecordComparator> readDocumentsFromDatabase(List<String> fields, String type,
-            DocumentImportEvent event) throws QueryException, PluginException {
-        int pageIndex = 0;
-        int pageSize = 100;
-        int totalCount = 0;
-        Map<String, RecordComparator> result = new HashMap<>();
-
+    private String buildQuery(String type, DocumentImportEvent event) throws PluginException {
         String modelVersion = event.getSource().getItemValueString(DocumentImportService.SOURCE_ITEM_MODELVERSION);
         String workflowGroup = event.getSource().getItemValueString(DocumentImportService.SOURCE_ITEM_WORKFLOWGROUP);
-        logger.info("│   ├── read entries from database...");
-        // now we store the hash from each document in a hash index table.
         String query = "(type:" + type + ") ";
 
         // read Workflow options (optional)
@@ -604,6 +810,73 @@ public class CSVImportService {
                 query = query + " AND ($modelversion:\"" + modelVersion + "\") ";
             }
         }
+        return query;
+    }
+
+    /**
+     * Writes a batch of entities in one transaction. If the batch fails, each
+     * entity is processed again in a separate transaction.
+     * 
+     * @return list of the written entities in the order of the batch
+     */
+    private List<ItemCollection> commitBatch(List<ItemCollection> entities, String modelVersion,
+            String workflowGroup, int eventID) {
+        // the batch works on copies, so a failed batch can be retried with the
+        // origin data
+        List<ItemCollection> batch = new ArrayList<ItemCollection>(entities.size());
+        for (ItemCollection entity : entities) {
+            if (eventID > 0) {
+                entity.model(modelVersion).workflowGroup(workflowGroup).event(eventID);
+            }
+            batch.add((ItemCollection) entity.clone());
+        }
+        try {
+            return csvImportBatchService.writeBatch(batch, eventID);
+        } catch (EJBException e) {
+            logger.warning("│   ├── ⚠️ batch of " + entities.size() + " entities failed - retry one by one: "
+                    + e.getMessage());
+            List<ItemCollection> result = new ArrayList<ItemCollection>(entities.size());
+            for (ItemCollection entity : entities) {
+                result.add(processEntity(entity, modelVersion, workflowGroup, eventID));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns a int value from the source options or a default value.
+     * 
+     * @throws PluginException
+     */
+    private int getIntOption(Properties options, String name, int defaultValue) throws PluginException {
+        String value = options.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new PluginException(this.getClass().getName(), CONFIG_ERROR,
+                    "Invalid option '" + name + "=" + value + "' - number expected");
+        }
+    }
+
+    /**
+     * This helper method reads all existing documents and stores the hash index in
+     * a local map index.
+     * 
+     * @return hash index
+     * @throws QueryException
+     */
+    private Map<String, RecordComparator> readDocumentsFromDatabase(List<String> fields, String query)
+            throws QueryException {
+        int pageIndex = 0;
+        int pageSize = 100;
+        int totalCount = 0;
+        Map<String, RecordComparator> result = new HashMap<>();
+
+        logger.info("│   ├── read entries from database...");
+        // now we store the hash from each document in a hash index table.
         logger.info("│   ├── query=" + query);
         while (true) {
             List<ItemCollection> entries = documentService.find(query, pageSize, pageIndex, "$created", false);
@@ -626,64 +899,170 @@ public class CSVImportService {
     }
 
     /**
-     * This method creates a ItemCollection from a csv file data line
+     * Returns the $uniqueid of the import index document of an import source. The
+     * id is computed from the selector and the query of the source.
+     */
+    private String computeImportIndexId(String query, DocumentImportEvent event) {
+        String sourceKey = event.getSource().getItemValueString(DocumentImportService.SOURCE_ITEM_SERVER) + "|"
+                + event.getSource().getItemValueString(DocumentImportService.SOURCE_ITEM_SELECTOR) + "|" + query;
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < sourceKey.length(); i++) {
+            h ^= sourceKey.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return TYPE_IMPORT_INDEX + "-" + Long.toHexString(h);
+    }
+
+    /**
+     * Loads the import index of the last import. The index is stored as a
+     * compressed file in a separate document and maps each key to the $uniqueid
+     * and the fingerprint of the entity.
+     * <p>
+     * The index is only used if the number of entries matches the number of
+     * entities found by the query and the last modified entity is unchanged since
+     * the index was written. So an entity removed and another entity created in
+     * the meantime invalidates the index. Otherwise the method returns null and
+     * the entities have to be read from the database.
      * 
-     * The method also creates a txtworkflowabstract to support fulltext search
+     * @return hash index or null if no valid index exists
+     */
+    private Map<String, RecordComparator> loadImportIndex(String query, DocumentImportEvent event) {
+        ItemCollection indexDocument = documentService.load(computeImportIndexId(query, event));
+        if (indexDocument == null) {
+            return null;
+        }
+        FileData fileData = indexDocument.getFileData(IMPORT_INDEX_FILE);
+        if (fileData == null || fileData.getContent() == null || fileData.getContent().length == 0) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(fileData.getContent()))))) {
+            int size = in.readInt();
+            int count = documentService.count(query);
+            if (size != count) {
+                documentImportService.logMessage("│   ├── import index outdated (" + size + " entries, " + count
+                        + " found) - read entries from database...", event);
+                return null;
+            }
+            if (indexDocument.getItemValueLong("csv.index.modified") != findLastModified(query)) {
+                documentImportService.logMessage(
+                        "│   ├── import index outdated (entities modified) - read entries from database...", event);
+                return null;
+            }
+            Map<String, RecordComparator> result = new HashMap<String, RecordComparator>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                RecordComparator record = new RecordComparator(in.readUTF(), in.readUTF(), in.readLong());
+                result.put(record.id, record);
+            }
+            documentImportService.logMessage("│   ├── import index loaded - " + size + " entries", event);
+            return result;
+        } catch (IOException | QueryException e) {
+            logger.warning("failed to read import index: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the $modified time of the last modified entity selected by the query
+     * or 0 if no entity exists.
+     */
+    private long findLastModified(String query) throws QueryException {
+        List<ItemCollection> entries = documentService.find(query, 1, 0, "$modified", true);
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+        Date modified = entries.get(0).getItemValueDate("$modified");
+        return modified == null ? 0 : modified.getTime();
+    }
+
+    /**
+     * Stores the import index into a separate document. The document is excluded
+     * from snapshots. The $modified time of the last modified entity is stored to
+     * validate the index in the next run.
+     */
+    private void saveImportIndex(Map<String, RecordComparator> importIndex, String query,
+            DocumentImportEvent event) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(bytes)))) {
+                out.writeInt(importIndex.size());
+                for (RecordComparator record : importIndex.values()) {
+                    out.writeUTF(record.id);
+                    out.writeUTF(record.uniqueId);
+                    out.writeLong(record.hash);
+                }
+            }
+            String id = computeImportIndexId(query, event);
+            ItemCollection indexDocument = documentService.load(id);
+            if (indexDocument == null) {
+                indexDocument = new ItemCollection();
+                indexDocument.setItemValue(WorkflowKernel.UNIQUEID, id);
+                indexDocument.setItemValue("type", TYPE_IMPORT_INDEX);
+            }
+            indexDocument.setItemValue("$nosnapshot", true);
+            indexDocument.setItemValue("name",
+                    event.getSource().getItemValue(DocumentImportService.SOURCE_ITEM_SELECTOR));
+            indexDocument.setItemValue("csv.index.query", query);
+            indexDocument.setItemValue("csv.index.count", importIndex.size());
+            // flush the lucene index to find the last modified entity
+            indexUpdateService.updateIndex();
+            indexDocument.setItemValue("csv.index.modified", findLastModified(query));
+            indexDocument.addFileData(
+                    new FileData(IMPORT_INDEX_FILE, bytes.toByteArray(), "application/octet-stream", null));
+            documentService.saveByNewTransaction(indexDocument);
+        } catch (IOException | EJBException | AccessDeniedException | QueryException e) {
+            logger.warning("failed to write import index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This method creates a ItemCollection from the field values of a csv record.
+     * The values are converted into the types defined by the column schema.
      * 
-     * @param data
+     * @param values
      * @param fieldnames
+     * @param schema
      * @return
      */
-    private ItemCollection readEntity(String data, List<String> fieldnames, String type, String keyField) {
+    private ItemCollection readEntity(List<String> values, List<String> fieldnames, String type, String keyField,
+            CSVColumnSchema schema) {
         ItemCollection result = new ItemCollection();
         // add type...
         result.replaceItemValue("type", type);
 
-        int iCol = 0;
-        // @see
-        // http://stackoverflow.com/questions/2241758/regarding-java-split-command-parsing-csv-file
-        String[] valuList = data.split(";(?=([^\"]*\"[^\"]*\")*[^\"]*$)", 99);
-        valuList = normalizeValueList(valuList);
-        for (String itemValue : valuList) {
-            // test if the token has content
-            itemValue = itemValue.trim();
-            if (itemValue != null && !itemValue.isEmpty()) {
-                // create a itemValue with the corresponding fieldName
-                result.replaceItemValue(fieldnames.get(iCol), itemValue);
-            } else {
-                // empty value
-                result.replaceItemValue(fieldnames.get(iCol), "");
+        String keyItemValue = "";
+        int columns = Math.min(values.size(), fieldnames.size());
+        for (int iCol = 0; iCol < columns; iCol++) {
+            String fieldName = fieldnames.get(iCol);
+            if (fieldName == null) {
+                // column without a name
+                continue;
             }
-            iCol++;
-            if (iCol >= fieldnames.size()) {
-                break;
+            String value = values.get(iCol).trim();
+            if (fieldName.equalsIgnoreCase(keyField)) {
+                keyItemValue = value;
             }
+            result.replaceItemValue(fieldName, schema.convert(fieldName, value));
         }
         // replace 'name' by the key field
-        String keyItemValue = result.getItemValueString(keyField);
         result.replaceItemValue("name", keyItemValue);
 
         return result;
     }
 
     /**
-     * This method removes the " from a value list
-     * 
-     * 
-     * @param data
-     * @return
+     * Returns the field separator defined by the option 'separator'. The value
+     * 'tab' or '\\t' defines a tab separator. The default separator is ';'
      */
-    private String[] normalizeValueList(String[] data) {
-
-        for (int i = 0; i < data.length; i++) {
-            String value = data[i];
-            if (value.startsWith("\"") && value.endsWith("\"")) {
-                value = value.substring(1, value.length() - 1);
-                data[i] = value;
-            }
-
+    private char parseSeparator(String separator) {
+        if (separator == null || separator.isEmpty()) {
+            return ';';
         }
-        return data;
+        if ("tab".equalsIgnoreCase(separator) || "\\t".equals(separator)) {
+            return '\t';
+        }
+        return separator.charAt(0);
     }
 
     /**
@@ -691,11 +1070,10 @@ public class CSVImportService {
      * 
      * @return list of fieldnames
      */
-    private List<String> parseFieldList(String data) {
+    private List<String> parseFieldList(List<String> data) {
         List<String> result = new ArrayList<String>();
-        StringTokenizer st = new StringTokenizer(data, ";");
-        while (st.hasMoreTokens()) {
-            String field = st.nextToken().trim();
+        for (String token : data) {
+            String field = token.trim();
             if (!field.isEmpty()) {
                 field = field.replace("\"", "");
                 field = field.replace("'", "");
@@ -718,32 +1096,313 @@ public class CSVImportService {
     }
 
     /**
-     * Local entity record to compare entities by a hash code
+     * File info of a csv file with the modification time and size
+     */
+    class CSVFileInfo {
+        Path path;
+        String modified;
+        String size;
+        boolean temporary = false;
+    }
+
+    /**
+     * A csv record parsed into its fingerprint. The entity is only build if the
+     * record is new or has changed.
+     */
+    class ParsedRecord {
+        List<String> values;
+        int line;
+        ItemCollection entity;
+        RecordComparator record;
+    }
+
+    /**
+     * The RecordProducer reads the csv records and builds the entities and
+     * fingerprints. The records are returned in file order.
+     * <p>
+     * The key and fingerprint of a record are computed directly from the raw
+     * values. The entity is only build if the fingerprint differs from the import
+     * index of the last run, so unchanged rows cost no more than hashing.
+     * <p>
+     * If more than one worker is defined, the records are read in chunks and each
+     * chunk is parsed by a worker thread of the ManagedExecutorService.
+     */
+    class RecordProducer {
+        private static final int CHUNK_SIZE = 500;
+        private final CSVRecordReader in;
+        private final List<String> fields;
+        private final String type;
+        private final String keyField;
+        private final Map<String, RecordComparator> databaseCache;
+        private final CSVColumnSchema schema;
+        private final long seed;
+        private final int workers;
+        // the effective column of each field and of the key field
+        private final int[] columns;
+        private final int keyColumn;
+        private final Deque<Future<List<ParsedRecord>>> chunks = new ArrayDeque<Future<List<ParsedRecord>>>();
+        private Iterator<ParsedRecord> current = Collections.emptyIterator();
+        private boolean endOfFile = false;
+
+        RecordProducer(CSVRecordReader in, List<String> fields, String type, String keyField,
+                Map<String, RecordComparator> databaseCache, CSVColumnSchema schema, int workers) {
+            this.in = in;
+            this.fields = fields;
+            this.type = type;
+            this.keyField = keyField;
+            this.databaseCache = databaseCache;
+            this.schema = schema;
+            this.workers = workers;
+            // a schema change must update all entities
+            this.seed = schema.isEmpty() ? FINGERPRINT_SEED : fingerprint(FINGERPRINT_SEED, schema.getDefinition());
+            // item names are not case sensitive - a later column overwrites an earlier
+            // column with the same name
+            this.columns = new int[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                columns[i] = fields.get(i) == null ? -1 : findColumn(fields.get(i), fields.size());
+            }
+            this.keyColumn = findColumn(keyField, fields.size());
+        }
+
+        /**
+         * Returns the last column with the given name within the limit or -1
+         */
+        private int findColumn(String name, int limit) {
+            for (int j = limit - 1; j >= 0; j--) {
+                if (name.equalsIgnoreCase(fields.get(j))) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the next parsed record or null if the end of the file is reached
+         */
+        ParsedRecord next() throws IOException, InterruptedException, ExecutionException {
+            if (workers <= 1) {
+                List<String> values = in.readRecord();
+                return values == null ? null : parse(values, in.getLineNumber());
+            }
+            while (!current.hasNext()) {
+                // keep all workers busy
+                while (!endOfFile && chunks.size() < workers * 2) {
+                    submitChunk();
+                }
+                if (chunks.isEmpty()) {
+                    return null;
+                }
+                current = chunks.poll().get().iterator();
+            }
+            return current.next();
+        }
+
+        void cancel() {
+            for (Future<List<ParsedRecord>> chunk : chunks) {
+                chunk.cancel(true);
+            }
+            chunks.clear();
+        }
+
+        private void submitChunk() throws IOException {
+            List<List<String>> records = new ArrayList<List<String>>(CHUNK_SIZE);
+            List<Integer> lines = new ArrayList<Integer>(CHUNK_SIZE);
+            while (records.size() < CHUNK_SIZE) {
+                List<String> values = in.readRecord();
+                if (values == null) {
+                    endOfFile = true;
+                    break;
+                }
+                records.add(new ArrayList<String>(values));
+                lines.add(in.getLineNumber());
+            }
+            if (records.size() > 0) {
+                chunks.add(managedExecutorService.submit(() -> {
+                    List<ParsedRecord> result = new ArrayList<ParsedRecord>(records.size());
+                    for (int i = 0; i < records.size(); i++) {
+                        result.add(parse(records.get(i), lines.get(i)));
+                    }
+                    return result;
+                }));
+            }
+        }
+
+        private ParsedRecord parse(List<String> values, int line) {
+            ParsedRecord result = new ParsedRecord();
+            result.values = values;
+            result.line = line;
+            int limit = Math.min(values.size(), fields.size());
+            int column = keyColumn < limit ? keyColumn : findColumn(keyField, limit);
+            String id = column < 0 ? "" : values.get(column).trim();
+            long hash = seed;
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] < 0) {
+                    continue;
+                }
+                // an incomplete record has no value for the last columns
+                column = columns[i] < limit ? columns[i] : findColumn(fields.get(i), limit);
+                hash = fingerprint(hash, column < 0 ? "" : values.get(column).trim());
+            }
+            result.record = new RecordComparator(id, null, finish(hash));
+            RecordComparator existingIndex = databaseCache.get(id);
+            if (existingIndex == null || existingIndex.hash != result.record.hash) {
+                result.entity = readEntity(values, fields, type, keyField, schema);
+                result.entity.setItemValue(ITEM_FINGERPRINT, result.record.hash);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The BatchWriter writes batches of entities and stores the $uniqueid of each
+     * entity into the import index. If more than one worker is defined, the
+     * batches are written in parallel by the ManagedExecutorService, each batch
+     * in its own transaction. The results are applied in the order the batches
+     * were written.
+     */
+    class BatchWriter {
+        private final Map<String, RecordComparator> importIndex;
+        private final String modelVersion;
+        private final String workflowGroup;
+        private final int eventID;
+        private final int workers;
+        private final Deque<Future<List<ItemCollection>>> results = new ArrayDeque<Future<List<ItemCollection>>>();
+        private final Deque<List<RecordComparator>> records = new ArrayDeque<List<RecordComparator>>();
+
+        BatchWriter(Map<String, RecordComparator> importIndex, String modelVersion, String workflowGroup,
+                int eventID, int workers) {
+            this.importIndex = importIndex;
+            this.modelVersion = modelVersion;
+            this.workflowGroup = workflowGroup;
+            this.eventID = eventID;
+            this.workers = workers;
+        }
+
+        /**
+         * Writes a batch of entities. The given lists are cleared.
+         */
+        void write(List<ItemCollection> entities, List<RecordComparator> batchRecords)
+                throws InterruptedException, ExecutionException {
+            if (entities.size() == 0) {
+                return;
+            }
+            List<ItemCollection> batch = new ArrayList<ItemCollection>(entities);
+            records.add(new ArrayList<RecordComparator>(batchRecords));
+            entities.clear();
+            batchRecords.clear();
+            if (workers <= 1) {
+                complete(commitBatch(batch, modelVersion, workflowGroup, eventID));
+                return;
+            }
+            results.add(managedExecutorService.submit(() -> commitBatch(batch, modelVersion, workflowGroup, eventID)));
+            while (results.size() >= workers) {
+                complete(results.poll().get());
+            }
+        }
+
+        /**
+         * Waits for all outstanding batches
+         */
+        void close() throws InterruptedException, ExecutionException {
+            while (!results.isEmpty()) {
+                complete(results.poll().get());
+            }
+        }
+
+        void cancel() {
+            for (Future<List<ItemCollection>> result : results) {
+                result.cancel(false);
+            }
+            results.clear();
+        }
+
+        private void complete(List<ItemCollection> written) {
+            List<RecordComparator> batchRecords = records.poll();
+            for (int i = 0; i < batchRecords.size(); i++) {
+                RecordComparator record = batchRecords.get(i);
+                importIndex.put(record.id,
+                        new RecordComparator(record.id, written.get(i).getUniqueID(), record.hash));
+            }
+            // flush lucene index!
+            indexUpdateService.updateIndex();
+        }
+    }
+
+    /**
+     * Local entity record to compare entities by a 64bit fingerprint.
+     * <p>
+     * The fingerprint of an imported entity is stored in the item
+     * 'document.import.fingerprint', so it is not recomputed for existing
+     * entities. For entities imported before, the fingerprint is computed from
+     * the field values.
      */
     class RecordComparator {
         String id;
-        int hash;
+        long hash;
         String uniqueId;
 
+        public RecordComparator(String id, String uniqueId, long hash) {
+            this.id = id;
+            this.uniqueId = uniqueId;
+            this.hash = hash;
+        }
+
         public RecordComparator(ItemCollection entity, List<String> fields) {
             this.id = entity.getItemValueString("name");
-            this.hash = generateHash(entity, fields);
+            if (entity.hasItem(ITEM_FINGERPRINT)) {
+                this.hash = entity.getItemValueLong(ITEM_FINGERPRINT);
+            } else {
+                this.hash = generateHash(entity, fields);
+            }
             this.uniqueId = entity.getUniqueID();
         }
 
         /**
-         * Builds a hashcode from a
+         * Builds a 64bit fingerprint over all field values. The chars of each value
+         * are hashed with FNV-1a followed by the value length as a separator, so no
+         * intermediate strings are created. The result is mixed with the Murmur3
+         * finalizer.
          * 
-         * @param wokritem
+         * @param workitem
          * @param fields
-         * @return
+         * @return fingerprint
          */
-        private int generateHash(ItemCollection wokritem, List<String> fields) {
-            String result = "";
+        private long generateHash(ItemCollection workitem, List<String> fields) {
+            long h = FINGERPRINT_SEED;
             for (String item : fields) {
-                result = result + wokritem.getItemValueString(item);
+                if (item == null) {
+                    continue;
+                }
+                h = fingerprint(h, workitem.getItemValueString(item));
             }
-            return result.hashCode();
+            return finish(h);
+        }
+    }
+
+    /**
+     * Adds the chars of a value to a FNV-1a fingerprint, followed by the value
+     * length as a field separator.
+     */
+    static long fingerprint(long h, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
         }
+        // field separator
+        h ^= 0x10000 + value.length();
+        h *= 0x100000001b3L;
+        return h;
+    }
+
+    /**
+     * Mixes a fingerprint with the Murmur3 finalizer
+     */
+    static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
     }
 }
@@ -0,0 +1,147 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.workflow.importer.ftp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The CSVRecordReader reads records from a CSV stream in a single pass. The
+ * reader implements the quoting rules of RFC 4180:
+ * <ul>
+ * <li>a field starting with '"' is quoted</li>
+ * <li>a quoted field can contain separators and line breaks</li>
+ * <li>a '"' inside a quoted field is escaped by a second '"'</li>
+ * </ul>
+ * Records are separated by LF, CR or CRLF. The field buffer and the value list
+ * are reused for each record.
+ * 
+ * @author rsoika
+ *
+ */
+public class CSVRecordReader {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Reader reader;
+    private final char separator;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder(256);
+    private final List<String> values = new ArrayList<String>();
+    private int pos = 0;
+    private int limit = 0;
+    private int lineNumber = 0;
+
+    public CSVRecordReader(Reader reader, char separator) {
+        this.reader = reader;
+        this.separator = separator;
+    }
+
+    /**
+     * Returns the number of lines read so far. A quoted field with line breaks
+     * counts for each line.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Reads the next record. The returned list is reused by the next call of this
+     * method.
+     * 
+     * @return list of field values or null if the end of the stream is reached
+     * @throws IOException
+     */
+    public List<String> readRecord() throws IOException {
+        values.clear();
+        field.setLength(0);
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        lineNumber++;
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    c = read();
+                    if (c == '"') {
+                        // escaped quote
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (c == separator) {
+                values.add(field.toString());
+                field.setLength(0);
+                fieldStart = true;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    c = read();
+                    if (c != '\n' && c != -1) {
+                        // unread
+                        pos--;
+                    }
+                }
+                break;
+            } else {
+                field.append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+        values.add(field.toString());
+        return values;
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit) {
+            limit = reader.read(buffer, 0, BUFFER_SIZE);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+}
@@ -179,6 +179,7 @@ public class FTPImportService {
 
             FTPFile[] files = ftpClient.listFiles();
             if (files.length == 0) {
+                event.addDocumentCount(0);
                 documentImportService.logMessage("└── ✅ Directory empty: " + path, event);
                 return;
             }
@@ -200,12 +201,14 @@ public class FTPImportService {
                                     event);
                             throw ee;
                         }
+                        event.addDocumentCount(1);
                         documentImportService.logMessage("│   ├── ✅ Imported " + file.getName(), event);
                     } else {
                         documentImportService.logMessage("│   ├── ⚠️ Empty file ignored: " + file.getName(), event);
                     }
                 }
             }
+            event.addDocumentCount(0);
             documentImportService.logMessage("└── ✅ Completed.", event);
         } finally {
             try {
@@ -254,6 +257,7 @@ public class FTPImportService {
             documentImportService.logMessage("│   ├── connection successful!", event);
 
             if (files.isEmpty()) {
+                event.addDocumentCount(0);
                 documentImportService.logMessage("└── ✅ Directory empty: " + path, event);
                 return;
             }
@@ -277,6 +281,7 @@ public class FTPImportService {
                                     event);
                             throw ee;
                         }
+                        event.addDocumentCount(1);
                         documentImportService.logMessage("│   ├── ✅ Imported " + file.getName(), event);
                     } else {
                         documentImportService.logMessage("│   ├── ⚠️ Empty file ignored: " + file.getName(), event);
@@ -284,6 +289,8 @@ public class FTPImportService {
                 }
             }
 
+            event.addDocumentCount(0);
+
             documentImportService.logMessage("└── ✅ Completed.", event);
         } finally {
             ssh.close();
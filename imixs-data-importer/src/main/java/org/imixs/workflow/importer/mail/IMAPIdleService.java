@@ -0,0 +1,470 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.workflow.importer.mail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.engine.scheduler.Scheduler;
+import org.imixs.workflow.engine.scheduler.SchedulerService;
+import org.imixs.workflow.exceptions.AccessDeniedException;
+import org.imixs.workflow.exceptions.ModelException;
+import org.imixs.workflow.exceptions.PluginException;
+import org.imixs.workflow.exceptions.ProcessingErrorException;
+import org.imixs.workflow.importer.DocumentImportEvent;
+import org.imixs.workflow.importer.DocumentImportScheduler;
+import org.imixs.workflow.importer.DocumentImportService;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.concurrent.ManagedExecutors;
+import jakarta.enterprise.concurrent.ManagedTask;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.event.MessageCountEvent;
+import jakarta.mail.event.MessageCountListener;
+
+/**
+ * The IMAPIdleService holds a long-lived connection for IMAP sources with the
+ * option 'imap.idle=true'. The listener waits in the IMAP IDLE state and
+ * imports new messages as soon as the server reports them by a
+ * MessageCountEvent. So the import does not depend on the scheduler interval.
+ * <p>
+ * A listener is registered by the IMAPImportService during a regular scheduler
+ * run and runs as a long-running task of the ManagedExecutorService. If the
+ * server does not support the IDLE command, no listener is started and the
+ * source is imported by the scheduler only. The scheduler run remains active as
+ * a fallback, e.g. for messages received while a listener reconnects.
+ * <p>
+ * A listener is identified by the id of the source and the import folder. If
+ * the connection settings or options of the source change, the listener is
+ * restarted with the next registration.
+ * <p>
+ * The IDLE command is renewed every 5 minutes. At the same time each listener
+ * is verified against the importer configuration. A listener is stopped if the
+ * importer is disabled, the source was removed or changed or the option
+ * 'imap.idle' was disabled. A listener not registered again within 24 hours is
+ * stopped. A listener and a scheduler run never import the same source at the
+ * same time.
+ *
+ * @see IMAPImportService
+ * @author rsoika
+ * @version 1.0
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class IMAPIdleService {
+
+    public static final String OPTION_IDLE = "imap.idle";
+    public static final long LISTENER_EXPIRY = 24 * 60 * 60 * 1000;
+
+    public static final int IDLE_STARTED = 0;
+    public static final int IDLE_ACTIVE = 1;
+    public static final int IDLE_UNSUPPORTED = 2;
+    public static final int IDLE_RESTARTED = 3;
+
+    // time to wait for the MessageCountEvent after the IDLE command returned
+    private static final long EVENT_WAIT = 1000;
+
+    private static Logger logger = Logger.getLogger(IMAPIdleService.class.getName());
+
+    private final Map<String, IdleListener> listeners = new ConcurrentHashMap<String, IdleListener>();
+    private final Map<String, Semaphore> locks = new ConcurrentHashMap<String, Semaphore>();
+    // fingerprints of sources not supporting the IDLE command
+    private final Map<String, String> unsupported = new ConcurrentHashMap<String, String>();
+
+    @Resource
+    ManagedExecutorService managedExecutorService;
+
+    @EJB
+    IMAPImportService imapImportService;
+
+    @EJB
+    SchedulerService schedulerService;
+
+    @EJB
+    DocumentImportService documentImportService;
+
+    /**
+     * Computes the listener key of a source. The key is the id of the source and
+     * the import folder, so it does not change if the options of the source are
+     * changed.
+     */
+    public static String computeKey(ItemCollection source) {
+        return source.getItemValueString(DocumentImportService.SOURCE_ITEM_ID) + "|"
+                + source.getItemValueString(DocumentImportService.SOURCE_ITEM_SELECTOR);
+    }
+
+    /**
+     * Computes the fingerprint of the connection settings, options and workflow
+     * settings of a source. A listener with a different fingerprint is outdated.
+     */
+    public static String computeFingerprint(ItemCollection source, Properties sourceOptions,
+            String authenticatorClass) {
+        return IMAPStorePool.computeKey(source, sourceOptions, authenticatorClass) + "|"
+                + new TreeMap<Object, Object>(sourceOptions) + "|"
+                + source.getItemValueString(DocumentImportService.SOURCE_ITEM_TASK) + "|"
+                + source.getItemValueString(DocumentImportService.SOURCE_ITEM_EVENT) + "|"
+                + source.getItemValueString(DocumentImportService.SOURCE_ITEM_WORKFLOWGROUP) + "|"
+                + source.getItemValueString(DocumentImportService.SOURCE_ITEM_MODELVERSION);
+    }
+
+    /**
+     * Registers a IDLE listener for a source. If no listener is running for the
+     * source, a new listener is started. If the running listener was started with
+     * different settings, the listener is stopped and a new listener is started.
+     *
+     * @return IDLE_STARTED, IDLE_RESTARTED, IDLE_ACTIVE or IDLE_UNSUPPORTED if the
+     *         server does not support the IDLE command
+     */
+    public int register(String key, ItemCollection source, Properties sourceOptions,
+            IMAPAuthenticator imapAuthenticator) {
+        String fingerprint = computeFingerprint(source, sourceOptions, imapAuthenticator.getClass().getName());
+        if (fingerprint.equals(unsupported.get(key))) {
+            return IDLE_UNSUPPORTED;
+        }
+        unsupported.remove(key);
+        if (managedExecutorService == null) {
+            logger.warning("...no ManagedExecutorService available - IDLE listener not started");
+            return IDLE_UNSUPPORTED;
+        }
+        int status = IDLE_STARTED;
+        IdleListener listener = listeners.get(key);
+        if (listener != null) {
+            if (listener.fingerprint.equals(fingerprint)) {
+                listener.lastRegistered = System.currentTimeMillis();
+                return IDLE_ACTIVE;
+            }
+            // the source was changed
+            logger.info("...IDLE listener outdated - restarting");
+            listeners.remove(key, listener);
+            listener.stop();
+            status = IDLE_RESTARTED;
+        }
+        listener = new IdleListener(key, fingerprint, (ItemCollection) source.clone(), sourceOptions,
+                imapAuthenticator);
+        if (listeners.putIfAbsent(key, listener) != null) {
+            return IDLE_ACTIVE;
+        }
+        listener.future = managedExecutorService.submit(ManagedExecutors.managedTask(listener,
+                Map.of(ManagedTask.LONGRUNNING_HINT, "true", ManagedTask.IDENTITY_NAME, "IMAP IDLE " + key),
+                null));
+        return status;
+    }
+
+    /**
+     * Stops the IDLE listener of a source, e.g. if the option 'imap.idle' was
+     * disabled.
+     *
+     * @return true if a listener was stopped
+     */
+    public boolean unregister(String key) {
+        unsupported.remove(key);
+        IdleListener listener = listeners.remove(key);
+        if (listener == null) {
+            return false;
+        }
+        listener.stop();
+        return true;
+    }
+
+    /**
+     * Acquires the import lock of a source without waiting. Returns false if the
+     * source is imported by a IDLE listener at the moment.
+     */
+    public boolean tryLock(String key) {
+        return getLock(key).tryAcquire();
+    }
+
+    public void unlock(String key) {
+        getLock(key).release();
+    }
+
+    private Semaphore getLock(String key) {
+        return locks.computeIfAbsent(key, k -> new Semaphore(1));
+    }
+
+    /**
+     * Renews the IDLE command of all listeners. Listeners not matching the
+     * importer configuration or not registered within the expiry time are
+     * stopped.
+     */
+    @Schedule(minute = "*/5", hour = "*", persistent = false)
+    public void keepAlive() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Map<String, String> fingerprints = loadFingerprints();
+        long now = System.currentTimeMillis();
+        for (IdleListener listener : listeners.values()) {
+            if (!listener.fingerprint.equals(fingerprints.get(listener.key))) {
+                logger.info("...IDLE listener source disabled or changed - stopping");
+                listeners.remove(listener.key, listener);
+                listener.stop();
+            } else if (now - listener.lastRegistered > LISTENER_EXPIRY) {
+                logger.info("...IDLE listener expired - stopping");
+                listeners.remove(listener.key, listener);
+                listener.stop();
+            } else {
+                listener.renew();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the source of a listener is still defined with the same
+     * settings in an enabled importer configuration.
+     */
+    boolean isValid(IdleListener listener) {
+        return listener.fingerprint.equals(loadFingerprints().get(listener.key));
+    }
+
+    /**
+     * Loads the importer configuration and computes the listener key and
+     * fingerprint of all IMAP sources with the option 'imap.idle'. The result is
+     * empty if the importer is disabled.
+     */
+    private Map<String, String> loadFingerprints() {
+        Map<String, String> result = new HashMap<String, String>();
+        ItemCollection configuration = schedulerService
+                .loadConfiguration(DocumentImportScheduler.DOCUMENT_IMPORTER_NAME);
+        if (configuration == null || !configuration.getItemValueBoolean(Scheduler.ITEM_SCHEDULER_ENABLED)) {
+            return result;
+        }
+        for (ItemCollection source : documentImportService.loadSourcesFromConfiguration(configuration)) {
+            if (!"IMAP".equalsIgnoreCase(source.getItemValueString("type"))) {
+                continue;
+            }
+            Properties sourceOptions = documentImportService.getOptionsProperties(source);
+            if (!Boolean.parseBoolean(sourceOptions.getProperty(OPTION_IDLE, "false"))) {
+                continue;
+            }
+            String authenticatorClass = sourceOptions.getProperty(IMAPImportService.OPTION_IMAP_AUTHENTICATOR,
+                    "org.imixs.workflow.importer.mail.IMAPBasicAuthenticator");
+            result.put(computeKey(source), computeFingerprint(source, sourceOptions, authenticatorClass));
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("...stopping " + listeners.size() + " IMAP IDLE listeners");
+        for (IdleListener listener : listeners.values()) {
+            listener.stop();
+        }
+        listeners.clear();
+    }
+
+    /**
+     * The IdleListener opens the import folder and waits in the IDLE state. New
+     * messages reported by a MessageCountEvent are collected and imported by the
+     * IMAPImportService after the IDLE command returned.
+     */
+    class IdleListener implements Runnable, MessageCountListener {
+        private final String key;
+        private final String fingerprint;
+        private final ItemCollection source;
+        private final Properties sourceOptions;
+        private final IMAPAuthenticator imapAuthenticator;
+        private final BlockingQueue<Message> addedMessages = new LinkedBlockingQueue<Message>();
+        private volatile boolean running = true;
+        private volatile long lastRegistered = System.currentTimeMillis();
+        private volatile Store store;
+        private volatile IMAPFolder importFolder;
+        private volatile Future<?> future;
+
+        IdleListener(String key, String fingerprint, ItemCollection source, Properties sourceOptions,
+                IMAPAuthenticator imapAuthenticator) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.source = source;
+            this.sourceOptions = sourceOptions;
+            this.imapAuthenticator = imapAuthenticator;
+        }
+
+        @Override
+        public void run() {
+            String server = source.getItemValueString(DocumentImportService.SOURCE_ITEM_SERVER);
+            try {
+                store = imapAuthenticator.openMessageStore(source, sourceOptions);
+                if (store == null) {
+                    logger.warning("...IDLE listener failed to connect to IMAP server " + server);
+                    return;
+                }
+                if (!(store instanceof IMAPStore) || !((IMAPStore) store).hasCapability("IDLE")) {
+                    logger.info("...IMAP server " + server + " does not support IDLE - falling back to polling");
+                    unsupported.put(key, fingerprint);
+                    return;
+                }
+                IMAPFolder inboxFolder = (IMAPFolder) store.getFolder("INBOX");
+                String importFolderName = source.getItemValueString(DocumentImportService.SOURCE_ITEM_SELECTOR);
+                importFolder = importFolderName.isEmpty() ? inboxFolder
+                        : (IMAPFolder) inboxFolder.getFolder(importFolderName);
+                importFolder.open(Folder.READ_WRITE);
+                importFolder.addMessageCountListener(this);
+
+                DocumentImportEvent event = new DocumentImportEvent(source);
+                IMAPFolder archiveFolder = imapImportService.openImapArchive(store, inboxFolder, sourceOptions,
+                        event);
+                archiveFolder.open(Folder.READ_WRITE);
+                String subjectRegex = sourceOptions.getProperty(IMAPImportService.OPTION_SUBJECT_REGEX, "");
+                Pattern subjectPattern = subjectRegex.trim().isEmpty() ? null : Pattern.compile(subjectRegex);
+                logger.info("...IDLE listener started for IMAP server " + server + " /INBOX/" + importFolderName);
+
+                while (running) {
+                    // messages reported while importing are processed without waiting
+                    if (addedMessages.isEmpty()) {
+                        importFolder.idle();
+                    }
+                    Message message = addedMessages.poll(EVENT_WAIT, TimeUnit.MILLISECONDS);
+                    if (message == null || !running) {
+                        continue;
+                    }
+                    List<Message> messages = new ArrayList<Message>();
+                    messages.add(message);
+                    addedMessages.drainTo(messages);
+                    importMessages(messages.toArray(new Message[messages.size()]), subjectPattern, archiveFolder);
+                }
+            } catch (MessagingException e) {
+                if (running) {
+                    logger.warning("...IDLE listener for IMAP server " + server + " stopped: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                listeners.remove(key, this);
+                close();
+            }
+        }
+
+        /**
+         * Imports the new messages. If the source is imported by the scheduler at the
+         * moment, the listener waits until the scheduler run is completed. If the
+         * source was disabled or changed in the meantime, the listener is stopped
+         * and the messages are left to the scheduler.
+         */
+        private void importMessages(Message[] messages, Pattern subjectPattern, IMAPFolder archiveFolder)
+                throws InterruptedException {
+            Semaphore lock = getLock(key);
+            lock.acquire();
+            try {
+                if (!running) {
+                    return;
+                }
+                if (!isValid(this)) {
+                    logger.info("...IDLE listener source disabled or changed - stopping");
+                    running = false;
+                    return;
+                }
+                DocumentImportEvent event = new DocumentImportEvent(source);
+                imapImportService.importMessages(messages, subjectPattern, event, sourceOptions, importFolder,
+                        archiveFolder);
+                for (String message : event.getMessages()) {
+                    logger.fine(message);
+                }
+                logger.info("...IDLE import completed - " + Math.max(event.getDocumentCount(), 0)
+                        + " messages imported");
+            } catch (AccessDeniedException | ProcessingErrorException | PluginException | ModelException | IOException
+                    | MessagingException e) {
+                logger.warning("...IDLE import failed: " + e.getMessage());
+            } finally {
+                lock.release();
+            }
+        }
+
+        @Override
+        public void messagesAdded(MessageCountEvent e) {
+            for (Message message : e.getMessages()) {
+                addedMessages.add(message);
+            }
+        }
+
+        @Override
+        public void messagesRemoved(MessageCountEvent e) {
+            // no op
+        }
+
+        /**
+         * Accessing the folder terminates the IDLE command, so the listener enters
+         * a new IDLE command.
+         */
+        void renew() {
+            IMAPFolder folder = importFolder;
+            if (folder != null && folder.isOpen()) {
+                try {
+                    folder.getMessageCount();
+                } catch (MessagingException e) {
+                    logger.fine("...failed to renew IDLE: " + e.getMessage());
+                }
+            }
+        }
+
+        void stop() {
+            running = false;
+            close();
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        private void close() {
+            try {
+                if (store != null && store.isConnected()) {
+                    store.close();
+                }
+            } catch (MessagingException e) {
+                logger.fine("...failed to close store: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -28,11 +28,31 @@
 
 package org.imixs.workflow.importer.mail;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
+import org.imixs.workflow.FileData;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.search.OrTerm;
+import jakarta.mail.search.SearchTerm;
+import jakarta.mail.search.SubjectTerm;
 import jakarta.ws.rs.core.MediaType;
 
 /**
@@ -42,6 +62,9 @@ import jakarta.ws.rs.core.MediaType;
  * @version 1.0
  */
 public class IMAPImportHelper {
+    public static final String ATTRIBUTE_SIZE = "size";
+    public static final String ATTRIBUTE_MD5 = "md5checksum";
+
     private static Logger logger = Logger.getLogger(IMAPImportHelper.class.getName());
 
     /**
@@ -158,4 +181,115 @@ public class IMAPImportHelper {
         }
         return contentType;
     }
+
+    /**
+     * Creates a SearchTerm to filter messages by the subject on the IMAP server.
+     * This is only possible for a regular expression consisting of plain text
+     * alternatives like 'order|offer' or '(order|offer)'. For all other
+     * expressions the method returns null.
+     * <p>
+     * The IMAP search is case-insensitive. So the SearchTerm is only a pre-filter
+     * and the regular expression still need to be matched by the client.
+     * 
+     * @param regex - subject regular expression
+     * @return SubjectTerm, OrTerm or null
+     */
+    public static SearchTerm createSubjectTerm(String regex) {
+        if (regex == null || regex.trim().isEmpty()) {
+            return null;
+        }
+        String expression = regex.trim();
+        // strip a single outer group
+        if (expression.startsWith("(") && expression.indexOf(')') == expression.length() - 1) {
+            expression = expression.substring(1, expression.length() - 1);
+        }
+        List<SearchTerm> terms = new ArrayList<SearchTerm>();
+        for (String alternative : expression.split("\\|", -1)) {
+            if (!alternative.matches("[^\\\\^$.|?*+()\\[\\]{}]+")) {
+                // not a plain text
+                return null;
+            }
+            terms.add(new SubjectTerm(alternative));
+        }
+        if (terms.size() == 1) {
+            return terms.get(0);
+        }
+        return new OrTerm(terms.toArray(new SearchTerm[terms.size()]));
+    }
+
+    /**
+     * Writes the raw message into a temp file. The caller is responsible to delete
+     * the file.
+     * 
+     * @param message
+     * @return temp file
+     * @throws IOException
+     * @throws MessagingException
+     */
+    public static Path spoolMessage(Message message) throws IOException, MessagingException {
+        Path file = Files.createTempFile("imap-import-", ".eml");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+            message.writeTo(output);
+        } catch (IOException | MessagingException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Creates a FileData object from a stream. The stream is spooled into a temp
+     * file first, so the content is read into a byte array of the exact size
+     * without intermediate buffers.
+     * 
+     * @param fileName
+     * @param input       - the stream is closed by this method
+     * @param contentType
+     * @return FileData with the attributes 'size' and 'md5checksum'
+     * @throws IOException
+     */
+    public static FileData createFileData(String fileName, InputStream input, String contentType)
+            throws IOException {
+        Path file = Files.createTempFile("imap-part-", ".tmp");
+        try {
+            try (InputStream in = input) {
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return createFileData(fileName, file, contentType);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Creates a FileData object from a file. The size and the MD5 checksum are
+     * computed while the file is read. The checksum has the same format as
+     * {@link FileData#generateMD5()}.
+     * 
+     * @param fileName
+     * @param file
+     * @param contentType
+     * @return FileData with the attributes 'size' and 'md5checksum'
+     * @throws IOException
+     */
+    public static FileData createFileData(String fileName, Path file, String contentType) throws IOException {
+        long size = Files.size(file);
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("file '" + fileName + "' exceeds the maximum size (" + size + " bytes)");
+        }
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] content;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), md5)) {
+            content = in.readNBytes((int) size);
+        }
+        Map<String, List<Object>> attributes = new HashMap<String, List<Object>>();
+        attributes.put(ATTRIBUTE_SIZE, List.of(content.length));
+        attributes.put(ATTRIBUTE_MD5, List.of(HexFormat.of().withUpperCase().formatHex(md5.digest())));
+        return new FileData(fileName, content, contentType, attributes);
+    }
 }
@@ -29,16 +29,23 @@
 package org.imixs.workflow.importer.mail;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.eclipse.angus.mail.imap.IMAPFolder;
-import org.imixs.workflow.FileData;
 import org.imixs.workflow.ItemCollection;
 import org.imixs.workflow.engine.ModelService;
 import org.imixs.workflow.engine.WorkflowService;
@@ -49,23 +56,32 @@ import org.imixs.workflow.exceptions.ProcessingErrorException;
 import org.imixs.workflow.importer.DocumentImportEvent;
 import org.imixs.workflow.importer.DocumentImportService;
 
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.Any;
 import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 import jakarta.mail.Address;
 import jakarta.mail.BodyPart;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Flags;
 import jakarta.mail.Folder;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
 import jakarta.mail.Multipart;
 import jakarta.mail.Part;
+import jakarta.mail.Session;
 import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.search.SearchTerm;
+import jakarta.mail.util.SharedFileInputStream;
 
 /**
  * The EmailImportAdapter scans a IMAP account
@@ -88,6 +104,17 @@ import jakarta.mail.internet.MimeUtility;
  * The authenticator to be used can be defined in the optional property
  * imap.authenticator. If not defined, the service defaults to the
  * IMAPBaasicAuthenticator implementation.
+ * <p>
+ * The mail store and the open folders are kept in the IMAPStorePool between
+ * two runs, so a run does not need a new login.
+ * <p>
+ * The service stores the UIDVALIDITY and the highest processed UID of the import
+ * folder in the source. So each run only fetches new messages. The headers of
+ * the messages are fetched in one request. A simple subject regex is used to
+ * filter the messages on the server.
+ * <p>
+ * With the option 'imap.idle=true' new messages are imported immediately by a
+ * IDLE listener of the IMAPIdleService.
  * 
  * @author rsoika
  * @version 1.0
@@ -97,20 +124,28 @@ public class IMAPImportService {
 
     public static final String OPTION_DEBUG = "debug";
     public static final String OPTION_ARCHIVE_FOLDER = "archive.folder";
+    public static final String OPTION_ARCHIVE_BATCHSIZE = "archive.batchsize";
+    public static final String OPTION_WORKERS = "workers";
     public static final String OPTION_SUBJECT_REGEX = "subject.regex";
     public static final String OPTION_IMAP_AUTHENTICATOR = "imap.authenticator";
 
     public static final String OPTION_DETACH_MODE = "detach.mode";
     public static final String OPTION_PRESERVE_ORIGIN = "preserve.origin";
+    public static final String OPTION_FETCH_PARTIAL = "fetch.partial";
     public static final String OPTION_GOTENBERG_SERVICE = "gotenberg.service";
 
     public static final String DETACH_MODE_PDF = "PDF";
     public static final String DETACH_MODE_ALL = "ALL";
     public static final String DETACH_MODE_NONE = "NONE";
     public static final String ARCHIVE_DEFAULT_NAME = "imixs-archive";
+    public static final int ARCHIVE_DEFAULT_BATCHSIZE = 100;
+    public static final String FLAG_IMPORTED = "imixs-imported";
 
     public static final String DEFAULT_NO_SUBJECT = "no subject";
 
+    public static final String SOURCE_ITEM_UIDVALIDITY = "imap.uidvalidity";
+    public static final String SOURCE_ITEM_UID = "imap.uid";
+
     private static Logger logger = Logger.getLogger(IMAPImportService.class.getName());
 
     @EJB
@@ -125,10 +160,19 @@ public class IMAPImportService {
     @EJB
     MailMessageService mailMessageService;
 
+    @EJB
+    IMAPStorePool imapStorePool;
+
+    @EJB
+    IMAPIdleService imapIdleService;
+
     @Inject
     @Any
     protected Instance<IMAPAuthenticator> imapAuthenticators;
 
+    @Resource
+    ManagedExecutorService managedExecutorService;
+
     /**
      * This method reacts on a CDI ImportEvent and reads documents form a IMAP
      * server.
@@ -172,6 +216,11 @@ public class IMAPImportService {
             }
         }
 
+        IMAPStorePool.PooledStore pooledStore = null;
+        boolean releaseStore = false;
+        boolean idle = Boolean.parseBoolean(sourceOptions.getProperty(IMAPIdleService.OPTION_IDLE, "false"));
+        String idleKey = null;
+        boolean idleLocked = false;
         try {
             Store store = null;
             // depending on the option "imap.authenticator" we use the corresponding
@@ -187,13 +236,46 @@ public class IMAPImportService {
                     break;
                 }
             }
-            store = imapAuthenticator.openMessageStore(event.getSource(), sourceOptions);
-            if (store == null) {
-                documentImportService.logMessage("│   ├── ⚠️ failed to connect to IMAP server.",
+            if (imapAuthenticator == null) {
+                documentImportService.logMessage("│   ├── ⚠️ IMAPAuthenticator not found: " + authenticatorClass,
+                        event);
+                event.setResult(DocumentImportEvent.PROCESSING_ERROR);
+                return;
+            }
+            // skip the run if a IDLE listener is importing the source at the moment
+            idleKey = IMAPIdleService.computeKey(event.getSource());
+            if (idle) {
+                idleLocked = imapIdleService.tryLock(idleKey);
+                if (!idleLocked) {
+                    documentImportService.logMessage("└── ☑️ IDLE listener is importing new messages - skipped",
+                            event);
+                    return;
+                }
+            } else if (imapIdleService.unregister(idleKey)) {
+                documentImportService.logMessage("│   ├── ☑️ IDLE listener stopped", event);
+            }
+            // reuse a pooled store?
+            boolean pool = Boolean.parseBoolean(sourceOptions.getProperty(IMAPStorePool.OPTION_POOL, "true"));
+            String poolKey = IMAPStorePool.computeKey(event.getSource(), sourceOptions, authenticatorClass);
+            if (pool) {
+                pooledStore = imapStorePool.borrow(poolKey);
+            }
+            if (pooledStore == null) {
+                store = imapAuthenticator.openMessageStore(event.getSource(), sourceOptions);
+                if (store == null) {
+                    documentImportService.logMessage("│   ├── ⚠️ failed to connect to IMAP server.",
+                            event);
+                    event.setResult(DocumentImportEvent.PROCESSING_ERROR);
+                    return;
+                }
+                pooledStore = new IMAPStorePool.PooledStore(poolKey, store);
+                documentImportService.logMessage("│   ├── ☑️ connection to IMAP server successful",
+                        event);
+            } else {
+                store = pooledStore.getStore();
+                documentImportService.logMessage("│   ├── ☑️ reusing pooled IMAP connection",
                         event);
             }
-            documentImportService.logMessage("│   ├── ☑️ connection to IMAP server successful",
-                    event);
 
             // first we need to open the INBOX...
             inboxFolder = (IMAPFolder) store.getFolder("INBOX");
@@ -209,7 +291,7 @@ public class IMAPImportService {
                 importFolder = inboxFolder;
             }
 
-            importFolder.open(Folder.READ_WRITE);
+            importFolder = pooledStore.openFolder(importFolder);
 
             // Depending on the option 'detach.mode' attachments will be added to the new
             // workitem.
@@ -217,32 +299,55 @@ public class IMAPImportService {
             documentImportService.logMessage("│   ├── detach.mode = " + detachOption, event);
 
             // open archive folder...
-            IMAPFolder archiveFolder = openImapArchive(store, inboxFolder, sourceOptions, event);
-
-            // fetches all messages from the INBOX...
-            Message[] messages = importFolder.getMessages();
-            documentImportService.logMessage("│   ├── " + messages.length + " messages found", event);
-            int successCount = 0;
-            int errorCount = 0;
+            IMAPFolder archiveFolder = pooledStore
+                    .openFolder(openImapArchive(store, inboxFolder, sourceOptions, event));
+
+            // fetches all messages newer than the last processed UID...
+            long uidValidity = importFolder.getUIDValidity();
+            long lastUID = 0;
+            if (event.getSource().getItemValueLong(SOURCE_ITEM_UIDVALIDITY) == uidValidity) {
+                lastUID = event.getSource().getItemValueLong(SOURCE_ITEM_UID);
+            } else if (event.getSource().hasItem(SOURCE_ITEM_UIDVALIDITY)) {
+                documentImportService.logMessage("│   ├── UIDVALIDITY changed - scanning all messages", event);
+            }
+            Message[] messages = importFolder.getMessagesByUID(lastUID + 1, UIDFolder.MAXUID);
+            // the range 'n:*' always contains the last message
+            List<Message> newMessages = new ArrayList<Message>();
+            long highestUID = lastUID;
             for (Message message : messages) {
-                try {
-                    boolean result = processMessageObject(message, subjectPattern, event, sourceOptions, importFolder,
-                            archiveFolder);
-                    if (result) {
-                        successCount++;
-                    } else {
-                        errorCount++;
-                    }
-                } catch (MessagingException me) {
-                    documentImportService.logMessage("│   ├── ⚠️ failed to read message: " +
-                            me.getMessage(), event);
-                    continue;
+                long uid = importFolder.getUID(message);
+                if (uid > lastUID) {
+                    newMessages.add(message);
+                    highestUID = Math.max(highestUID, uid);
                 }
             }
+            messages = newMessages.toArray(new Message[newMessages.size()]);
+            // filter by subject on the server if possible
+            SearchTerm subjectTerm = IMAPImportHelper.createSubjectTerm(subjectRegex);
+            if (subjectTerm != null && messages.length > 0) {
+                messages = importFolder.search(subjectTerm, messages);
+            }
 
-            documentImportService.logMessage(
-                    "└── ✅ Completed - " + successCount + " messages imported, " + errorCount + " errors",
-                    event);
+            long failedUID = importMessages(messages, subjectPattern, event, sourceOptions, importFolder,
+                    archiveFolder);
+            // messages from a failed message on are scanned again in the next run
+            event.getSource().setItemValue(SOURCE_ITEM_UIDVALIDITY, uidValidity);
+            event.getSource().setItemValue(SOURCE_ITEM_UID, failedUID > 0 ? failedUID - 1 : highestUID);
+            releaseStore = pool;
+
+            // start a IDLE listener for new messages
+            if (idle) {
+                int idleStatus = imapIdleService.register(idleKey, event.getSource(), sourceOptions,
+                        imapAuthenticator);
+                if (idleStatus == IMAPIdleService.IDLE_STARTED) {
+                    documentImportService.logMessage("│   ├── ☑️ IDLE listener started", event);
+                } else if (idleStatus == IMAPIdleService.IDLE_RESTARTED) {
+                    documentImportService.logMessage("│   ├── ☑️ IDLE listener restarted - source changed", event);
+                } else if (idleStatus == IMAPIdleService.IDLE_UNSUPPORTED) {
+                    documentImportService.logMessage(
+                            "│   ├── ⚠️ IDLE not supported by IMAP server - falling back to polling", event);
+                }
+            }
 
         } catch (AccessDeniedException | ProcessingErrorException | PluginException | ModelException e) {
             documentImportService.logMessage("IMAP import failed: " + e.getMessage(), event);
@@ -252,22 +357,169 @@ public class IMAPImportService {
             documentImportService.logMessage("IMAP import failed: " + e.getMessage(), event);
             event.setResult(DocumentImportEvent.PROCESSING_ERROR);
             return;
+        } finally {
+            if (idleLocked) {
+                imapIdleService.unlock(idleKey);
+            }
+            // return the store into the pool or close it after an error
+            if (pooledStore != null) {
+                if (releaseStore) {
+                    imapStorePool.release(pooledStore);
+                } else {
+                    pooledStore.close();
+                }
+            }
         }
 
     }
 
     /**
-     * This method processes a single imap message object. The method creates a
-     * workitem and moves the message into the archive folder
+     * This method imports a list of messages from the import folder and moves the
+     * imported messages into the archive folder. The method is called by the
+     * scheduler run and by the IMAPIdleService for new messages.
+     * <p>
+     * The envelope, content info and UID of all messages are fetched in one
+     * request before the messages are processed.
+     * <p>
+     * Imported messages are moved in batches defined by the option
+     * 'archive.batchsize'. Each imported message is marked immediately with the
+     * keyword 'imixs-imported'. A marked message is not imported again but only
+     * moved into the archive folder, e.g. after a failure before the batch was
+     * moved. If the server does not support keywords, each message is moved
+     * immediately.
+     * <p>
+     * With the option 'workers' greater than 1 the messages are processed
+     * concurrently by a MessageProcessor.
+     * <p>
+     * The method returns the lowest UID of a message which could not be read, or
+     * 0 if all messages were read.
+     * 
+     * @param messages
+     * @param subjectPattern - optional subject pattern
+     * @param event
+     * @param sourceOptions
+     * @param importFolder
+     * @param archiveFolder
+     * @return lowest UID of a failed message or 0
+     * @throws AccessDeniedException
+     * @throws ProcessingErrorException
+     * @throws PluginException
+     * @throws ModelException
+     * @throws IOException
+     * @throws MessagingException
+     */
+    public long importMessages(Message[] messages, Pattern subjectPattern, DocumentImportEvent event,
+            Properties sourceOptions, IMAPFolder importFolder, IMAPFolder archiveFolder)
+            throws AccessDeniedException, ProcessingErrorException, PluginException, ModelException, IOException,
+            MessagingException {
+        documentImportService.logMessage("│   ├── " + messages.length + " messages found", event);
+        // prefetch the headers of all messages
+        FetchProfile fetchProfile = new FetchProfile();
+        fetchProfile.add(FetchProfile.Item.ENVELOPE);
+        fetchProfile.add(FetchProfile.Item.CONTENT_INFO);
+        fetchProfile.add(UIDFolder.FetchProfileItem.UID);
+        fetchProfile.add(FetchProfile.Item.FLAGS);
+        importFolder.fetch(messages, fetchProfile);
+
+        // imported messages are moved in batches if the server supports keywords
+        boolean keywords = importFolder.getPermanentFlags().contains(Flags.Flag.USER);
+        int batchSize = 1;
+        if (keywords) {
+            try {
+                batchSize = Math.max(1, Integer.parseInt(sourceOptions.getProperty(OPTION_ARCHIVE_BATCHSIZE,
+                        String.valueOf(ARCHIVE_DEFAULT_BATCHSIZE)).trim()));
+            } catch (NumberFormatException e) {
+                documentImportService.logMessage("│   ├── ⚠️ invalid archive.batchsize - using default", event);
+                batchSize = ARCHIVE_DEFAULT_BATCHSIZE;
+            }
+        }
+        int workers = 1;
+        try {
+            workers = Math.max(1, Integer.parseInt(sourceOptions.getProperty(OPTION_WORKERS, "1").trim()));
+        } catch (NumberFormatException e) {
+            documentImportService.logMessage("│   ├── ⚠️ invalid workers option - using 1 worker", event);
+        }
+        if (workers > 1 && managedExecutorService == null) {
+            logger.warning("...no ManagedExecutorService available - workers=1");
+            workers = 1;
+        }
+        if (workers > 1) {
+            documentImportService.logMessage("│   ├── workers = " + workers, event);
+        }
+
+        MessageProcessor processor = new MessageProcessor(subjectPattern, event, sourceOptions, importFolder,
+                archiveFolder, keywords, batchSize, workers);
+        try {
+            for (Message message : messages) {
+                // message moved in the meantime
+                if (message.isExpunged()) {
+                    continue;
+                }
+                if (!processor.submit(message)) {
+                    // import aborted
+                    break;
+                }
+            }
+            processor.complete();
+        } finally {
+            processor.markPending();
+        }
+        int successCount = processor.successCount;
+        int errorCount = processor.errorCount;
+        long failedUID = processor.failedUID;
+
+        event.addDocumentCount(successCount);
+        documentImportService.logMessage(
+                "└── ✅ Completed - " + successCount + " messages imported, " + errorCount + " errors",
+                event);
+        return failedUID;
+    }
+
+    /**
+     * Processes a message spooled into a temp file. The temp file is deleted
+     * afterwards.
+     */
+    private boolean processSpooledMessage(Path file, Pattern subjectPattern, DocumentImportEvent event,
+            Properties sourceOptions) throws MessagingException, AccessDeniedException, ProcessingErrorException,
+            PluginException, ModelException, IOException {
+        try (SharedFileInputStream input = new SharedFileInputStream(file.toFile())) {
+            MimeMessage message = new MimeMessage((Session) null, input);
+            return processMessageObject(message, file, subjectPattern, event, sourceOptions);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Moves a batch of messages into the archive folder and clears the list. The
+     * messages are moved by a single MOVE command.
+     */
+    private void moveMessages(List<Message> messages, IMAPFolder importFolder, IMAPFolder archiveFolder)
+            throws MessagingException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        importFolder.moveMessages(messages.toArray(new Message[messages.size()]), archiveFolder);
+        logger.fine("......" + messages.size() + " messages moved into archive folder");
+        messages.clear();
+    }
+
+    /**
+     * This method processes a single message spooled into a file. The method
+     * creates a workitem. The message is moved into the archive folder by the
+     * caller.
+     * <p>
+     * Attachments are streamed from the spooled message and the raw message file
+     * is attached as the .eml file. If no raw message is provided, the message is
+     * processed directly.
      * 
      * The method returns true if the message was successfully imported
      * 
      * @param message
+     * @param rawMessage - raw message file or null
      * @param subjectPattern
      * @param event
      * @param sourceOptions
-     * @param inportFolder
-     * @param archiveFolder
      * @throws MessagingException
      * @throws ModelException
      * @throws PluginException
@@ -276,11 +528,10 @@ public class IMAPImportService {
      * @throws IOException
      */
     private boolean processMessageObject(Message message,
+            Path rawMessage,
             Pattern subjectPattern,
             DocumentImportEvent event,
-            Properties sourceOptions,
-            IMAPFolder inportFolder,
-            IMAPFolder archiveFolder) throws MessagingException, AccessDeniedException, ProcessingErrorException,
+            Properties sourceOptions) throws MessagingException, AccessDeniedException, ProcessingErrorException,
             PluginException, ModelException, IOException {
 
         boolean debug = Boolean.getBoolean(sourceOptions.getProperty(OPTION_DEBUG, "false"));
@@ -299,24 +550,9 @@ public class IMAPImportService {
         logger.fine("......received mail from: " + fromAddress[0].toString());
         logger.fine("......subject = " + subject);
         // do we have a subject regular expression provided by the options?
-        if (subjectPattern != null) {
-            if (subject == null || DEFAULT_NO_SUBJECT.equals(subject)) {
-                // skip this mail
-                return false;
-            }
-            // test if subject matches?
-            Matcher subjectMatcher = subjectPattern.matcher(subject);
-            if (subjectMatcher == null) {
-                logger.finest("matcher is null!");
-                // skip this mail
-                return false;
-            }
-            if (!subjectMatcher.find()) {
-                // skip this mail
-                return false;
-            }
-        } else {
-            logger.finest("...no regex pattern mail will be processed...");
+        if (!isSubjectMatching(subject, subjectPattern)) {
+            // skip this mail
+            return false;
         }
 
         ItemCollection workitem = createWorkitem(event.getSource());
@@ -335,15 +571,17 @@ public class IMAPImportService {
         if (!DETACH_MODE_NONE.equals(detachOption)) {
             // scan for attachments....
             // we need to test if the content is a multipart of if is is plain text mail
+            // for a IMAP message the parts are resolved from the BODYSTRUCTURE and the
+            // content of a part is only fetched if the part is detached
             Object contentObject = message.getContent();
             if (contentObject instanceof Multipart) {
                 // here we are save to cast the content to Mulipart
-                Multipart multiPart = (Multipart) message.getContent();
+                Multipart multiPart = (Multipart) contentObject;
                 for (int i = 0; i < multiPart.getCount(); i++) {
 
                     BodyPart bodyPart = multiPart.getBodyPart(i);
                     if (bodyPart instanceof MimeBodyPart) {
-                        MimeBodyPart mimeBodyPart = (MimeBodyPart) multiPart.getBodyPart(i);
+                        MimeBodyPart mimeBodyPart = (MimeBodyPart) bodyPart;
                         if (Part.ATTACHMENT.equalsIgnoreCase(mimeBodyPart.getDisposition())) {
 
                             String fileName = mimeBodyPart.getFileName();
@@ -362,12 +600,10 @@ public class IMAPImportService {
                                 }
                             }
                             // add this attachment
-                            InputStream input = mimeBodyPart.getInputStream();
-                            byte[] content = IMAPImportHelper.readAllBytes(input);
                             String contentType = mimeBodyPart.getContentType();
                             contentType = IMAPImportHelper.fixContentType(contentType, fileName, debug);
-                            FileData fileData = new FileData(fileName, content, contentType, null);
-                            workitem.addFileData(fileData);
+                            workitem.addFileData(IMAPImportHelper.createFileData(fileName,
+                                    mimeBodyPart.getInputStream(), contentType));
                         }
                     }
                 }
@@ -398,32 +634,70 @@ public class IMAPImportService {
                 // attach the email as HTML....
                 mailMessageService.attachHTMLMessage(message, workitem);
             }
-
-            // only if OPTION_PRESERVE_ORIGIN=true than attach the origin message!
-            String preserveOrigin = sourceOptions.getProperty(OPTION_PRESERVE_ORIGIN, "true");
-            if (preserveOrigin != null && "true".equalsIgnoreCase(preserveOrigin)) {
-                mailMessageService.attachMessage(message, workitem);
-            }
         }
 
-        // attach the full e-mail in case of DETACH_MODE_PDF or DETACH_MODE_NONE
-        if (!DETACH_MODE_ALL.equalsIgnoreCase(detachOption)) {
-            mailMessageService.attachMessage(message, workitem);
+        // attach the origin e-mail
+        if (isRawMessageRequired(sourceOptions)) {
+            mailMessageService.attachMessage(message, rawMessage, workitem);
         }
 
         // finally process the workitem
         workitem = workflowService.processWorkItemByNewTransaction(workitem);
-
-        // move message into the archive-folder
-        Message[] messageList = { message };
-        inportFolder.moveMessages(messageList, archiveFolder);
         return true;
     }
 
     /**
-     * This method opens the IMAP archive folder. If the folder does not exist, the
-     * method creates the folder. The folder name can be configured by the property
-     * ARCHIVE_FOLDER. The default name is 'imixs-archive'
+     * Returns true if the origin message is attached as a .eml file. This is
+     * always the case for DETACH_MODE_PDF and DETACH_MODE_NONE. In case of
+     * DETACH_MODE_ALL the origin message is only attached if the option
+     * 'preserve.origin' is true (default).
+     */
+    public static boolean isRawMessageRequired(Properties sourceOptions) {
+        String detachOption = sourceOptions.getProperty(OPTION_DETACH_MODE, DETACH_MODE_PDF);
+        if (!DETACH_MODE_ALL.equalsIgnoreCase(detachOption)) {
+            return true;
+        }
+        // only if OPTION_PRESERVE_ORIGIN=true than attach the origin message!
+        String preserveOrigin = sourceOptions.getProperty(OPTION_PRESERVE_ORIGIN, "true");
+        return DETACH_MODE_ALL.equals(detachOption) && "true".equalsIgnoreCase(preserveOrigin);
+    }
+
+    /**
+     * Returns true if only the parts to be detached are fetched from the server
+     * instead of downloading the complete message. This requires the option
+     * 'fetch.partial=true' and is only possible if the origin message is not
+     * attached.
+     */
+    public static boolean isPartialFetch(Properties sourceOptions) {
+        return "true".equalsIgnoreCase(sourceOptions.getProperty(OPTION_FETCH_PARTIAL, "false"))
+                && !isRawMessageRequired(sourceOptions);
+    }
+
+    /**
+     * Returns true if the subject matches the subject pattern or no pattern is
+     * defined.
+     */
+    private boolean isSubjectMatching(String subject, Pattern subjectPattern) {
+        if (subjectPattern == null) {
+            logger.finest("...no regex pattern mail will be processed...");
+            return true;
+        }
+        if (subject == null || subject.trim().isEmpty() || DEFAULT_NO_SUBJECT.equals(subject)) {
+            return false;
+        }
+        // test if subject matches?
+        Matcher subjectMatcher = subjectPattern.matcher(subject);
+        if (subjectMatcher == null) {
+            logger.finest("matcher is null!");
+            return false;
+        }
+        return subjectMatcher.find();
+    }
+
+    /**
+     * This method returns the IMAP archive folder. If the folder does not exist,
+     * the method creates the folder. The folder name can be configured by the
+     * property ARCHIVE_FOLDER. The default name is 'imixs-archive'
      * 
      * @param sourceOptions
      * @param store
@@ -431,7 +705,7 @@ public class IMAPImportService {
      * @return
      * @throws MessagingException
      */
-    private IMAPFolder openImapArchive(Store store, IMAPFolder inbox, Properties sourceOptions,
+    public IMAPFolder openImapArchive(Store store, IMAPFolder inbox, Properties sourceOptions,
             DocumentImportEvent event) throws MessagingException {
         // open Archive folder
         String imapArchiveFolder = sourceOptions.getProperty(OPTION_ARCHIVE_FOLDER, ARCHIVE_DEFAULT_NAME);
@@ -447,7 +721,6 @@ public class IMAPImportService {
                 documentImportService.logMessage("│   ├── ⚠️ Error - failed to create new archive folder!", event);
             }
         }
-        archive.open(Folder.READ_WRITE);
         return archive;
     }
 
@@ -476,4 +749,245 @@ public class IMAPImportService {
         return workitem;
     }
 
+    /**
+     * The MessageProcessor imports the messages of one run. Each message is read
+     * from the import folder and spooled into a temp file by the calling thread.
+     * With one worker the message is processed directly. With the option
+     * 'fetch.partial' a message is not spooled but processed with only the
+     * detached parts being fetched. With more workers the
+     * workitems are created by worker threads of the ManagedExecutorService, with
+     * at most 'workers * 2' messages in flight.
+     * <p>
+     * A successfully imported message is marked with the imported keyword as soon
+     * as its worker is completed. The results are collected in the order of the
+     * messages, so the archive moves keep the order of the import folder. The
+     * import folder is only accessed by the calling thread.
+     */
+    class MessageProcessor {
+        private final Pattern subjectPattern;
+        private final DocumentImportEvent event;
+        private final Properties sourceOptions;
+        private final IMAPFolder importFolder;
+        private final IMAPFolder archiveFolder;
+        private final boolean keywords;
+        private final int batchSize;
+        private final int workers;
+        private final boolean partialFetch;
+        private final Flags importedFlag = new Flags(FLAG_IMPORTED);
+        private final Deque<PendingMessage> pending = new ArrayDeque<PendingMessage>();
+        private final List<Message> importedMessages = new ArrayList<Message>();
+        private Throwable abortCause = null;
+        int successCount = 0;
+        int errorCount = 0;
+        long failedUID = 0;
+
+        MessageProcessor(Pattern subjectPattern, DocumentImportEvent event, Properties sourceOptions,
+                IMAPFolder importFolder, IMAPFolder archiveFolder, boolean keywords, int batchSize, int workers) {
+            this.subjectPattern = subjectPattern;
+            this.event = event;
+            this.sourceOptions = sourceOptions;
+            this.importFolder = importFolder;
+            this.archiveFolder = archiveFolder;
+            this.keywords = keywords;
+            this.batchSize = batchSize;
+            this.workers = workers;
+            this.partialFetch = isPartialFetch(sourceOptions);
+        }
+
+        /**
+         * Submits a message for processing. The method returns false if the import
+         * was aborted by an earlier message.
+         */
+        boolean submit(Message message) throws MessagingException {
+            try {
+                if (message.getFlags().contains(FLAG_IMPORTED)) {
+                    // already imported in a previous run - move only
+                    logger.fine("......message already imported - moving into archive");
+                    pending.add(new PendingMessage(message, null));
+                } else if (!isSubjectMatching(message.getSubject(), subjectPattern)) {
+                    errorCount++;
+                } else if (partialFetch && workers <= 1) {
+                    // fetch only the parts to be detached
+                    pending.add(new PendingMessage(message, process(message, null)));
+                } else {
+                    // the raw message is downloaded once
+                    Path file = IMAPImportHelper.spoolMessage(message);
+                    if (workers > 1) {
+                        pending.add(new PendingMessage(message, managedExecutorService
+                                .submit(() -> processSpooledMessage(file, subjectPattern, event, sourceOptions))));
+                    } else {
+                        pending.add(new PendingMessage(message, process(null, file)));
+                    }
+                }
+            } catch (MessagingException | IOException e) {
+                failed(message, e);
+            }
+            markCompleted();
+            // collect the results in order
+            while (!pending.isEmpty() && (pending.size() >= workers * 2 || pending.peek().isDone())) {
+                collect(pending.poll());
+            }
+            return abortCause == null;
+        }
+
+        /**
+         * Waits for all pending messages and moves the last batch. If the import was
+         * aborted, the cause is thrown.
+         */
+        void complete() throws AccessDeniedException, ProcessingErrorException, PluginException, ModelException,
+                IOException, MessagingException {
+            while (!pending.isEmpty()) {
+                collect(pending.poll());
+            }
+            moveMessages(importedMessages, importFolder, archiveFolder);
+            if (abortCause != null) {
+                if (abortCause instanceof AccessDeniedException) {
+                    throw (AccessDeniedException) abortCause;
+                }
+                if (abortCause instanceof ProcessingErrorException) {
+                    throw (ProcessingErrorException) abortCause;
+                }
+                if (abortCause instanceof PluginException) {
+                    throw (PluginException) abortCause;
+                }
+                if (abortCause instanceof ModelException) {
+                    throw (ModelException) abortCause;
+                }
+                if (abortCause instanceof IOException) {
+                    throw (IOException) abortCause;
+                }
+                if (abortCause instanceof RuntimeException) {
+                    throw (RuntimeException) abortCause;
+                }
+                if (abortCause instanceof Error) {
+                    throw (Error) abortCause;
+                }
+                throw new PluginException(IMAPImportService.class.getName(), "IMPORT_ERROR",
+                        "message import aborted: " + abortCause.getMessage(), (Exception) abortCause);
+            }
+        }
+
+        /**
+         * Waits for messages still in progress after an error and marks the imported
+         * messages, so they are not imported again.
+         */
+        void markPending() {
+            for (PendingMessage pendingMessage : pending) {
+                try {
+                    if (pendingMessage.future != null && pendingMessage.future.get()) {
+                        mark(pendingMessage);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException | MessagingException e) {
+                    logger.fine("......pending message failed: " + e.getMessage());
+                }
+            }
+            pending.clear();
+        }
+
+        /**
+         * Processes a message or a spooled message in the calling thread
+         */
+        private Future<Boolean> process(Message message, Path file) {
+            try {
+                if (file == null) {
+                    return CompletableFuture.completedFuture(
+                            processMessageObject(message, null, subjectPattern, event, sourceOptions));
+                }
+                return CompletableFuture.completedFuture(
+                        processSpooledMessage(file, subjectPattern, event, sourceOptions));
+            } catch (MessagingException | AccessDeniedException | ProcessingErrorException | PluginException
+                    | ModelException | IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        /**
+         * Marks all completed messages with the imported keyword
+         */
+        private void markCompleted() throws MessagingException {
+            for (PendingMessage pendingMessage : pending) {
+                if (pendingMessage.future != null && !pendingMessage.marked && pendingMessage.future.isDone()) {
+                    try {
+                        if (pendingMessage.future.get()) {
+                            mark(pendingMessage);
+                        }
+                    } catch (ExecutionException | InterruptedException e) {
+                        // handled by collect
+                    }
+                }
+            }
+        }
+
+        private void mark(PendingMessage pendingMessage) throws MessagingException {
+            if (keywords && !pendingMessage.marked) {
+                pendingMessage.message.setFlags(importedFlag, true);
+            }
+            pendingMessage.marked = true;
+        }
+
+        /**
+         * Collects the result of a message and moves the imported messages if the
+         * batch size is reached.
+         */
+        private void collect(PendingMessage pendingMessage) throws MessagingException {
+            if (pendingMessage.future == null) {
+                importedMessages.add(pendingMessage.message);
+            } else {
+                try {
+                    if (pendingMessage.future.get()) {
+                        mark(pendingMessage);
+                        importedMessages.add(pendingMessage.message);
+                        successCount++;
+                    } else {
+                        errorCount++;
+                    }
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof MessagingException) {
+                        failed(pendingMessage.message, (MessagingException) e.getCause());
+                    } else if (abortCause == null) {
+                        abortCause = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (abortCause == null) {
+                        abortCause = e;
+                    }
+                }
+            }
+            if (importedMessages.size() >= batchSize) {
+                moveMessages(importedMessages, importFolder, archiveFolder);
+            }
+        }
+
+        private void failed(Message message, Exception e) throws MessagingException {
+            documentImportService.logMessage("│   ├── ⚠️ failed to read message: " +
+                    e.getMessage(), event);
+            long uid = importFolder.getUID(message);
+            if (failedUID == 0 || uid < failedUID) {
+                failedUID = uid;
+            }
+        }
+    }
+
+    /**
+     * A message in progress
+     */
+    static class PendingMessage {
+        final Message message;
+        final Future<Boolean> future;
+        boolean marked = false;
+
+        PendingMessage(Message message, Future<Boolean> future) {
+            this.message = message;
+            this.future = future;
+        }
+
+        boolean isDone() {
+            return future == null || future.isDone();
+        }
+    }
+
 }
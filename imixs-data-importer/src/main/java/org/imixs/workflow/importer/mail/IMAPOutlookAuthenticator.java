@@ -35,7 +35,9 @@ import java.io.Serializable;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.Enumeration;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -48,6 +50,7 @@ import jakarta.inject.Named;
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
+import jakarta.mail.AuthenticationFailedException;
 import jakarta.mail.MessagingException;
 import jakarta.mail.Session;
 import jakarta.mail.Store;
@@ -57,6 +60,10 @@ import jakarta.mail.Store;
  * OAUTH2.
  * <p>
  * This authenticator ignores the Source Server setting.
+ * <p>
+ * Access tokens are cached until they expire ('expires_in'). A cached token
+ * rejected by the server is removed from the cache and the connect is retried
+ * once with a new token.
  * 
  * 
  * @see IMAPImportService
@@ -68,6 +75,23 @@ public class IMAPOutlookAuthenticator implements IMAPAuthenticator, Serializable
     private static final long serialVersionUID = 1L;
     private static Logger logger = Logger.getLogger(IMAPOutlookAuthenticator.class.getName());
 
+    // token cache - a token is reused until 60 seconds before it expires
+    private static final long TOKEN_EXPIRY_MARGIN = 60 * 1000;
+    private static final Map<String, AccessToken> tokenCache = new ConcurrentHashMap<String, AccessToken>();
+
+    /**
+     * A cached access token with its expiry time
+     */
+    private static class AccessToken {
+        final String token;
+        final long expiresAt;
+
+        AccessToken(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     /**
      * This method returns a MailStore object based on a given Configuration
      * 
@@ -130,6 +154,8 @@ public class IMAPOutlookAuthenticator implements IMAPAuthenticator, Serializable
         String token = null;
         Store store = null;
         try {
+            String cacheKey = computeCacheKey(tenantId, clientId, imapPassword);
+            boolean cached = isTokenCached(cacheKey);
             token = getAuthToken(tenantId, clientId, imapPassword);
             Session session = Session.getInstance(imapProperties);
             // debug mode?
@@ -137,7 +163,19 @@ public class IMAPOutlookAuthenticator implements IMAPAuthenticator, Serializable
                 session.setDebug(true);
             }
             store = session.getStore("imap");
-            store.connect("outlook.office365.com", imapUser, token);
+            try {
+                store.connect("outlook.office365.com", imapUser, token);
+            } catch (AuthenticationFailedException e) {
+                // the token was rejected (revoked token, changed permissions or secret)
+                tokenCache.remove(cacheKey);
+                logger.warning("...access token rejected - removed from token cache: " + e.getMessage());
+                if (!cached) {
+                    throw e;
+                }
+                // retry once with a new token
+                token = getAuthToken(tenantId, clientId, imapPassword);
+                store.connect("outlook.office365.com", imapUser, token);
+            }
         } catch (IOException e) {
             throw new MessagingException("Failed to connect to IMAP Store", e);
         }
@@ -153,6 +191,12 @@ public class IMAPOutlookAuthenticator implements IMAPAuthenticator, Serializable
      * @throws ClientProtocolException
      */
     public String getAuthToken(String tenantId, String clientId, String client_secret) throws IOException {
+        String cacheKey = computeCacheKey(tenantId, clientId, client_secret);
+        AccessToken cachedToken = tokenCache.get(cacheKey);
+        if (cachedToken != null && System.currentTimeMillis() < cachedToken.expiresAt) {
+            logger.finest("...reusing cached access token");
+            return cachedToken.token;
+        }
         String sURL = "https://login.microsoftonline.com/" + tenantId + "/oauth2/v2.0/token";
         logger.finest("...oauth login url=" + sURL);
         HttpsURLConnection httpClient = (HttpsURLConnection) new URL(sURL).openConnection();
@@ -182,6 +226,15 @@ public class IMAPOutlookAuthenticator implements IMAPAuthenticator, Serializable
             JsonObject jsonObject = jsonReader.readObject();
             String token = jsonObject.getString("access_token");
             logger.fine("....access token = " + token);
+            // cache the token
+            // expires_in can be a number or a string
+            String expiresIn = jsonObject.containsKey("expires_in")
+                    ? jsonObject.get("expires_in").toString().replace("\"", "")
+                    : "";
+            if (expiresIn.matches("\\d+")) {
+                long expiresAt = System.currentTimeMillis() + Long.parseLong(expiresIn) * 1000 - TOKEN_EXPIRY_MARGIN;
+                tokenCache.put(cacheKey, new AccessToken(token, expiresAt));
+            }
             return token;
         } else {
             // read response error for more details
@@ -198,4 +251,20 @@ public class IMAPOutlookAuthenticator implements IMAPAuthenticator, Serializable
         }
     }
 
+    /**
+     * Computes the token cache key of an app registration. The secret is only
+     * stored as a hash.
+     */
+    private static String computeCacheKey(String tenantId, String clientId, String client_secret) {
+        return tenantId + "|" + clientId + "|" + Integer.toHexString(String.valueOf(client_secret).hashCode());
+    }
+
+    /**
+     * Returns true if a valid access token is cached for the given key
+     */
+    private static boolean isTokenCached(String cacheKey) {
+        AccessToken cachedToken = tokenCache.get(cacheKey);
+        return cachedToken != null && System.currentTimeMillis() < cachedToken.expiresAt;
+    }
+
 }
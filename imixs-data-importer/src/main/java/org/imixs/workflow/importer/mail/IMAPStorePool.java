@@ -0,0 +1,206 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.workflow.importer.mail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.importer.DocumentImportService;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+
+/**
+ * The IMAPStorePool keeps the mail stores of IMAP sources open between two
+ * scheduler runs. A store is borrowed by the IMAPImportService for one run and
+ * released afterwards. The store is identified by a key computed from the
+ * source configuration, so a changed configuration opens a new store.
+ * <p>
+ * Idle stores are checked every 5 minutes with a NOOP command and closed after
+ * the idle timeout. Open folders are reused with the store. All stores are
+ * closed on shutdown.
+ * <p>
+ * The pool can be disabled for a source by the option 'imap.pool=false'.
+ * 
+ * @see IMAPImportService
+ * @author rsoika
+ * @version 1.0
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class IMAPStorePool {
+
+    public static final String OPTION_POOL = "imap.pool";
+    public static final long IDLE_TIMEOUT = 10 * 60 * 1000;
+
+    private static Logger logger = Logger.getLogger(IMAPStorePool.class.getName());
+
+    private final Map<String, PooledStore> pool = new ConcurrentHashMap<String, PooledStore>();
+
+    /**
+     * A mail store with its open folders
+     */
+    public static class PooledStore {
+        private final String key;
+        private final Store store;
+        private final Map<String, IMAPFolder> folders = new HashMap<String, IMAPFolder>();
+        private long lastUsed;
+
+        public PooledStore(String key, Store store) {
+            this.key = key;
+            this.store = store;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+        public Store getStore() {
+            return store;
+        }
+
+        /**
+         * Opens a folder in READ_WRITE mode. An already opened folder with the same
+         * name is reused.
+         */
+        public IMAPFolder openFolder(IMAPFolder folder) throws MessagingException {
+            IMAPFolder openFolder = folders.get(folder.getFullName());
+            if (openFolder != null && openFolder.isOpen()) {
+                return openFolder;
+            }
+            folder.open(Folder.READ_WRITE);
+            folders.put(folder.getFullName(), folder);
+            return folder;
+        }
+
+        /**
+         * Closes all folders and the store
+         */
+        public void close() {
+            for (IMAPFolder folder : folders.values()) {
+                try {
+                    if (folder.isOpen()) {
+                        folder.close(false);
+                    }
+                } catch (MessagingException e) {
+                    logger.fine("...failed to close folder: " + e.getMessage());
+                }
+            }
+            folders.clear();
+            try {
+                store.close();
+            } catch (MessagingException e) {
+                logger.fine("...failed to close store: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Computes the pool key of a source. The key contains the server, port, user,
+     * authenticator and a hash of the password and the options.
+     */
+    public static String computeKey(ItemCollection source, Properties sourceOptions, String authenticatorClass) {
+        // sorted, so the key is stable
+        String options = new TreeMap<Object, Object>(sourceOptions).toString();
+        return authenticatorClass + "|" + source.getItemValueString(DocumentImportService.SOURCE_ITEM_SERVER) + ":"
+                + source.getItemValueString(DocumentImportService.SOURCE_ITEM_PORT) + "|"
+                + source.getItemValueString(DocumentImportService.SOURCE_ITEM_USER) + "|"
+                + Integer.toHexString(
+                        (source.getItemValueString(DocumentImportService.SOURCE_ITEM_PASSWORD) + options).hashCode());
+    }
+
+    /**
+     * Borrows a connected store from the pool. The method returns null if no store
+     * is available. A borrowed store is removed from the pool until it is released.
+     */
+    public PooledStore borrow(String key) {
+        PooledStore pooledStore = pool.remove(key);
+        if (pooledStore == null) {
+            return null;
+        }
+        // isConnected sends a NOOP if the connection is idle
+        if (!pooledStore.store.isConnected()) {
+            logger.fine("...pooled store disconnected - reconnecting");
+            pooledStore.close();
+            return null;
+        }
+        return pooledStore;
+    }
+
+    /**
+     * Returns a store into the pool. If the pool already contains a store for the
+     * same key, the released store is closed.
+     */
+    public void release(PooledStore pooledStore) {
+        pooledStore.lastUsed = System.currentTimeMillis();
+        if (pool.putIfAbsent(pooledStore.key, pooledStore) != null) {
+            pooledStore.close();
+        }
+    }
+
+    /**
+     * Sends a NOOP to all idle stores and closes stores exceeding the idle timeout
+     * or lost their connection.
+     */
+    @Schedule(minute = "*/5", hour = "*", persistent = false)
+    public void keepAlive() {
+        long now = System.currentTimeMillis();
+        for (String key : pool.keySet()) {
+            PooledStore pooledStore = pool.remove(key);
+            if (pooledStore == null) {
+                // borrowed in the meantime
+                continue;
+            }
+            if (now - pooledStore.lastUsed > IDLE_TIMEOUT || !pooledStore.store.isConnected()) {
+                logger.fine("...closing idle IMAP store");
+                pooledStore.close();
+            } else if (pool.putIfAbsent(key, pooledStore) != null) {
+                pooledStore.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("...closing " + pool.size() + " IMAP stores");
+        for (PooledStore pooledStore : pool.values()) {
+            pooledStore.close();
+        }
+        pool.clear();
+    }
+}
@@ -26,6 +26,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.logging.Logger;
 
 import org.imixs.workflow.FileData;
@@ -122,6 +123,29 @@ public class MailMessageService {
         workitem.addFileData(fileData);
     }
 
+    /**
+     * This method attaches the raw message spooled into a file as a .eml file to a
+     * given workitem. The file content is read once without serializing the
+     * message again.
+     * <p>
+     * The name of the attached file is _subject_.eml
+     * 
+     * @param message    - the message to resolve the file name
+     * @param rawMessage - the raw message file, if null the message is serialized
+     * @throws MessagingException
+     * @throws IOException
+     */
+    public void attachMessage(Message message, Path rawMessage, ItemCollection workitem)
+            throws IOException, MessagingException {
+        if (rawMessage == null) {
+            attachMessage(message, workitem);
+            return;
+        }
+        logger.fine("...attach message as eml file...");
+        String filename = resolveSubjectToFileName(message) + ".eml";
+        workitem.addFileData(IMAPImportHelper.createFileData(filename, rawMessage, "message/rfc822"));
+    }
+
     /**
      * Helper method to resolve the subject to a valid filename to be used to store
      * .pdf and .eml files.
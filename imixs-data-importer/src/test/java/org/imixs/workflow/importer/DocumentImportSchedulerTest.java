@@ -0,0 +1,113 @@
+package org.imixs.workflow.importer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.engine.scheduler.Scheduler;
+import org.imixs.workflow.engine.scheduler.SchedulerException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.event.Event;
+
+/**
+ * This test class is testing the DocumentImportScheduler in case a source
+ * exceeds the timeout and does not respond to the cancel request
+ *
+ */
+class DocumentImportSchedulerTest {
+
+    DocumentImportScheduler scheduler;
+    ExecutorService executor;
+    CountDownLatch release;
+    AtomicInteger fired;
+
+    @SuppressWarnings("unchecked")
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+        release = new CountDownLatch(1);
+        fired = new AtomicInteger();
+        scheduler = new DocumentImportScheduler();
+        scheduler.documentImportService = new DocumentImportService();
+        scheduler.managedExecutorService = mock(ManagedExecutorService.class);
+        doAnswer(invocation -> {
+            executor.execute(invocation.getArgument(0));
+            return null;
+        }).when(scheduler.managedExecutorService).execute(any());
+        scheduler.importEvents = mock(Event.class);
+        // the import ignores the interrupt until it is released
+        doAnswer(invocation -> {
+            fired.incrementAndGet();
+            while (true) {
+                try {
+                    if (release.await(10, TimeUnit.SECONDS)) {
+                        return null;
+                    }
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        }).when(scheduler.importEvents).fire(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private ItemCollection createConfiguration() {
+        ItemCollection configuration = new ItemCollection();
+        configuration.setItemValue(Scheduler.ITEM_SCHEDULER_DEFINITION,
+                "importer.concurrency=2\nimporter.source.timeout=1");
+        ItemCollection source = new ItemCollection();
+        source.setItemValue("type", "CSV");
+        source.setItemValue(DocumentImportService.SOURCE_ITEM_ID, "source-1");
+        List<Map<String, List<Object>>> sources = new ArrayList<Map<String, List<Object>>>();
+        sources.add(source.getAllItems());
+        configuration.replaceItemValue(DocumentImportService.ITEM_SOURCES, sources);
+        return configuration;
+    }
+
+    /**
+     * A source still running after the timeout is skipped until the import has
+     * finished.
+     */
+    @Test
+    void testSourceStillRunning() throws SchedulerException, InterruptedException {
+        ItemCollection configuration = scheduler.run(createConfiguration());
+        assertEquals(1, fired.get());
+        assertTrue(configuration.getItemValueList(Scheduler.ITEM_LOGMESSAGE, String.class).stream()
+                .anyMatch(message -> message.contains("source still running")));
+
+        // next run - the source is still running
+        configuration = scheduler.run(configuration);
+        assertEquals(1, fired.get());
+        assertTrue(configuration.getItemValueList(Scheduler.ITEM_LOGMESSAGE, String.class).stream()
+                .anyMatch(message -> message.contains("still running from a previous run - skipped")));
+
+        // the import finishes - the source is processed again
+        release.countDown();
+        for (int i = 0; i < 50 && fired.get() < 2; i++) {
+            Thread.sleep(100);
+            configuration = scheduler.run(configuration);
+        }
+        assertEquals(2, fired.get());
+    }
+}
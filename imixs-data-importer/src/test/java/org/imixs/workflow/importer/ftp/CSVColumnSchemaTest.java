@@ -0,0 +1,48 @@
+package org.imixs.workflow.importer.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Properties;
+
+import org.imixs.workflow.exceptions.PluginException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test class is testing the typed column conversion of the
+ * CSVColumnSchema
+ *
+ */
+class CSVColumnSchemaTest {
+
+    @Test
+    void testConvert() throws PluginException {
+        Properties options = new Properties();
+        options.setProperty("column.amount", "int");
+        options.setProperty("column._Price", "double");
+        options.setProperty("column.active", "boolean");
+        options.setProperty("column.created", "date:dd.MM.yyyy");
+        CSVColumnSchema schema = CSVColumnSchema.parse(options);
+
+        assertEquals(42, schema.convert("_amount", "42"));
+        assertEquals(9.5, schema.convert("_price", "9.5"));
+        assertEquals(Boolean.TRUE, schema.convert("_active", "yes"));
+        assertEquals(Date.from(LocalDate.of(2022, 3, 1).atStartOfDay(ZoneId.systemDefault()).toInstant()),
+                schema.convert("_created", "01.03.2022"));
+        // untyped, empty and invalid values
+        assertEquals("abc", schema.convert("_name", "abc"));
+        assertNull(schema.convert("_amount", ""));
+        assertEquals("x", schema.convert("_amount", "x"));
+    }
+
+    @Test
+    void testInvalidType() {
+        Properties options = new Properties();
+        options.setProperty("column.amount", "decimal");
+        assertThrows(PluginException.class, () -> CSVColumnSchema.parse(options));
+    }
+}
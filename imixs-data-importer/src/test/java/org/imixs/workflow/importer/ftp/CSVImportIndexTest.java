@@ -0,0 +1,127 @@
+package org.imixs.workflow.importer.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.WorkflowKernel;
+import org.imixs.workflow.engine.DocumentService;
+import org.imixs.workflow.engine.index.UpdateService;
+import org.imixs.workflow.exceptions.AccessDeniedException;
+import org.imixs.workflow.exceptions.PluginException;
+import org.imixs.workflow.exceptions.QueryException;
+import org.imixs.workflow.importer.DocumentImportEvent;
+import org.imixs.workflow.importer.DocumentImportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test class is testing the persisted import index of the
+ * CSVImportService in case the index refers to entities no longer existing
+ *
+ */
+class CSVImportIndexTest {
+
+    CSVImportService importService;
+    List<ItemCollection> savedDocuments;
+
+    @BeforeEach
+    void setUp() throws AccessDeniedException {
+        importService = new CSVImportService();
+        importService.documentService = mock(DocumentService.class);
+        importService.documentImportService = mock(DocumentImportService.class);
+        importService.indexUpdateService = mock(UpdateService.class);
+        when(importService.documentImportService.getOptionsProperties(any())).thenReturn(new Properties());
+        savedDocuments = new ArrayList<ItemCollection>();
+        when(importService.documentService.saveByNewTransaction(any())).thenAnswer(invocation -> {
+            ItemCollection document = invocation.getArgument(0);
+            if (document.getUniqueID().isEmpty()) {
+                document.setItemValue(WorkflowKernel.UNIQUEID, UUID.randomUUID().toString());
+            }
+            savedDocuments.add(document);
+            return document;
+        });
+    }
+
+    private String importData(String csv, DocumentImportEvent event) throws PluginException {
+        return importService.importData(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "UTF-8", ';',
+                "product", "_id", event);
+    }
+
+    private DocumentImportEvent createEvent() {
+        ItemCollection source = new ItemCollection();
+        source.setItemValue("type", "CSV");
+        source.setItemValue(DocumentImportService.SOURCE_ITEM_SELECTOR, "/products.csv");
+        return new DocumentImportEvent(source);
+    }
+
+    /**
+     * The import index refers to entities removed in the meantime. The import must
+     * create the entities again instead of failing.
+     */
+    @Test
+    void testStaleIndex() throws PluginException, QueryException {
+        // first run - creates two entities and the import index
+        String log = importData("id;name\n1;a\n2;b\n", createEvent());
+        assertTrue(log.contains("2 new entries"), log);
+        ItemCollection indexDocument = savedDocuments.stream()
+                .filter(document -> CSVImportService.TYPE_IMPORT_INDEX.equals(document.getType())).findFirst()
+                .orElse(null);
+        assertNotNull(indexDocument);
+
+        // second run - both entities were removed, the count still matches
+        savedDocuments.clear();
+        when(importService.documentService.load(indexDocument.getUniqueID())).thenReturn(indexDocument);
+        when(importService.documentService.count(anyString())).thenReturn(2);
+        log = importData("id;name\n1;changed\n", createEvent());
+
+        assertTrue(log.contains("1 new entries - 0 updates - 0 deletions"), log);
+        verify(importService.documentService, never()).remove(any());
+        verify(importService.documentService, atLeastOnce()).load(anyString());
+        // the index is written again
+        assertEquals(1, savedDocuments.stream()
+                .filter(document -> CSVImportService.TYPE_IMPORT_INDEX.equals(document.getType())).count());
+    }
+
+    /**
+     * A different last modified entity invalidates the import index
+     */
+    @Test
+    void testModifiedIndex() throws PluginException, QueryException {
+        importData("id;name\n1;a\n", createEvent());
+        ItemCollection indexDocument = savedDocuments.stream()
+                .filter(document -> CSVImportService.TYPE_IMPORT_INDEX.equals(document.getType())).findFirst()
+                .orElse(null);
+        assertNotNull(indexDocument);
+
+        ItemCollection otherEntity = new ItemCollection();
+        otherEntity.setItemValue("name", "1");
+        otherEntity.setItemValue(WorkflowKernel.UNIQUEID, "other");
+        otherEntity.setItemValue("$modified", new Date());
+        when(importService.documentService.load(indexDocument.getUniqueID())).thenReturn(indexDocument);
+        when(importService.documentService.count(anyString())).thenReturn(1);
+        when(importService.documentService.find(anyString(), any(Integer.class), any(Integer.class), anyString(),
+                any(Boolean.class))).thenReturn(List.of(otherEntity));
+        when(importService.documentService.load("other")).thenReturn(otherEntity);
+
+        String log = importData("id;name\n1;b\n", createEvent());
+        // the entity was read from the database and updated
+        assertTrue(log.contains("0 new entries - 1 updates"), log);
+    }
+}
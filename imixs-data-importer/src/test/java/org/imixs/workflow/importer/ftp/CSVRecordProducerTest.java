@@ -0,0 +1,79 @@
+package org.imixs.workflow.importer.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.exceptions.PluginException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test class is testing the fingerprints computed by the RecordProducer
+ * from the raw csv values
+ *
+ */
+class CSVRecordProducerTest {
+
+    CSVImportService importService = new CSVImportService();
+
+    private CSVColumnSchema emptySchema() throws PluginException {
+        return CSVColumnSchema.parse(new Properties());
+    }
+
+    /**
+     * The fingerprint computed from the raw values must be equal to the
+     * fingerprint computed from the entity, including duplicate column names and
+     * columns without a name.
+     */
+    @Test
+    void testFingerprint() throws IOException, InterruptedException, ExecutionException, PluginException {
+        List<String> fields = Arrays.asList("_id", "_name", null, "_NAME");
+        CSVImportService.RecordProducer producer = importService.new RecordProducer(
+                new CSVRecordReader(new StringReader("1; a ;x; b\n2;c\n"), ';'), fields, "product", "_id",
+                new HashMap<String, CSVImportService.RecordComparator>(), emptySchema(), 1);
+
+        CSVImportService.ParsedRecord record = producer.next();
+        assertEquals("1", record.record.id);
+        assertNotNull(record.entity);
+        ItemCollection entity = new ItemCollection(record.entity);
+        entity.removeItem(CSVImportService.ITEM_FINGERPRINT);
+        assertEquals(importService.new RecordComparator(entity, fields).hash, record.record.hash);
+
+        // incomplete record
+        record = producer.next();
+        assertEquals("2", record.record.id);
+        entity = new ItemCollection(record.entity);
+        entity.removeItem(CSVImportService.ITEM_FINGERPRINT);
+        assertEquals(importService.new RecordComparator(entity, fields).hash, record.record.hash);
+        assertNull(producer.next());
+    }
+
+    /**
+     * For an unchanged record no entity is build
+     */
+    @Test
+    void testUnchangedRecord() throws IOException, InterruptedException, ExecutionException, PluginException {
+        List<String> fields = Arrays.asList("_id", "_name");
+        Map<String, CSVImportService.RecordComparator> index = new HashMap<String, CSVImportService.RecordComparator>();
+        CSVImportService.RecordProducer producer = importService.new RecordProducer(
+                new CSVRecordReader(new StringReader("1;a\n"), ';'), fields, "product", "_id", index, emptySchema(), 1);
+        CSVImportService.ParsedRecord record = producer.next();
+        assertNotNull(record.entity);
+
+        index.put("1", record.record);
+        producer = importService.new RecordProducer(new CSVRecordReader(new StringReader("1;a\n2;b\n"), ';'), fields,
+                "product", "_id", index, emptySchema(), 1);
+        assertNull(producer.next().entity);
+        assertNotNull(producer.next().entity);
+    }
+}
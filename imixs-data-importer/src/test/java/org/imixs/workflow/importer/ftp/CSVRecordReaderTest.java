@@ -0,0 +1,47 @@
+package org.imixs.workflow.importer.ftp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This test class is testing the CSVRecordReader with quoted fields and
+ * multi-line values
+ * 
+ */
+class CSVRecordReaderTest {
+
+    @Test
+    void testSimpleRecords() throws IOException {
+        CSVRecordReader reader = new CSVRecordReader(new StringReader("a;b;c\r\n1;;3\n"), ';');
+
+        assertEquals(List.of("a", "b", "c"), reader.readRecord());
+        assertEquals(List.of("1", "", "3"), reader.readRecord());
+        assertNull(reader.readRecord());
+        assertEquals(2, reader.getLineNumber());
+    }
+
+    @Test
+    void testQuotedFields() throws IOException {
+        CSVRecordReader reader = new CSVRecordReader(
+                new StringReader("\"x;y\";\"say \"\"hello\"\"\";\"line1\nline2\"\nnext;row"), ';');
+
+        assertEquals(List.of("x;y", "say \"hello\"", "line1\nline2"), reader.readRecord());
+        assertEquals(2, reader.getLineNumber());
+        assertEquals(List.of("next", "row"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    void testSeparator() throws IOException {
+        CSVRecordReader reader = new CSVRecordReader(new StringReader("a\tb,c\t\"d\""), '\t');
+
+        assertEquals(List.of("a", "b,c", "d"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+}
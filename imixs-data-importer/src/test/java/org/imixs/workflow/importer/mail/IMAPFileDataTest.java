@@ -0,0 +1,78 @@
+package org.imixs.workflow.importer.mail;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+
+import org.imixs.workflow.FileData;
+import org.junit.jupiter.api.Test;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.util.SharedFileInputStream;
+
+/**
+ * This test class is testing the IMAPImportHelper to spool messages and to
+ * create FileData objects with size and checksum
+ *
+ */
+class IMAPFileDataTest {
+
+    @Test
+    void testCreateFileData() throws IOException, NoSuchAlgorithmException {
+        byte[] content = "some content".getBytes(StandardCharsets.UTF_8);
+        FileData fileData = IMAPImportHelper.createFileData("test.txt", new ByteArrayInputStream(content),
+                "text/plain");
+        assertArrayEquals(content, fileData.getContent());
+        assertEquals(List.of(content.length), fileData.getAttribute(IMAPImportHelper.ATTRIBUTE_SIZE));
+        assertEquals(List.of(fileData.generateMD5()), fileData.getAttribute(IMAPImportHelper.ATTRIBUTE_MD5));
+    }
+
+    /**
+     * An attachment streamed from a spooled message must be equal to the origin
+     * attachment
+     */
+    @Test
+    void testSpoolMessage() throws IOException, MessagingException {
+        byte[] pdf = new byte[100000];
+        for (int i = 0; i < pdf.length; i++) {
+            pdf[i] = (byte) i;
+        }
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setSubject("Invoice");
+        MimeBodyPart text = new MimeBodyPart();
+        text.setText("see attachment");
+        MimeBodyPart attachment = new MimeBodyPart();
+        attachment.setContent(pdf, "application/pdf");
+        attachment.setFileName("invoice.pdf");
+        attachment.setDisposition(MimeBodyPart.ATTACHMENT);
+        message.setContent(new MimeMultipart(text, attachment));
+        message.saveChanges();
+
+        Path file = IMAPImportHelper.spoolMessage(message);
+        try (SharedFileInputStream input = new SharedFileInputStream(file.toFile())) {
+            MimeMessage spooledMessage = new MimeMessage((Session) null, input);
+            assertEquals("Invoice", spooledMessage.getSubject());
+            MimeBodyPart part = (MimeBodyPart) ((Multipart) spooledMessage.getContent()).getBodyPart(1);
+            FileData fileData = IMAPImportHelper.createFileData(part.getFileName(), part.getInputStream(),
+                    "application/pdf");
+            assertArrayEquals(pdf, fileData.getContent());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        assertFalse(Files.exists(file));
+    }
+}
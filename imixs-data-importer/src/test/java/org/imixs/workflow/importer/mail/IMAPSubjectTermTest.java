@@ -0,0 +1,41 @@
+package org.imixs.workflow.importer.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.mail.search.OrTerm;
+import jakarta.mail.search.SearchTerm;
+import jakarta.mail.search.SubjectTerm;
+
+/**
+ * This test class is testing the IMAPImportHelper to create a server side
+ * subject filter from a subject regex
+ *
+ */
+class IMAPSubjectTermTest {
+
+    @Test
+    void testPlainText() {
+        SearchTerm term = IMAPImportHelper.createSubjectTerm("invoice");
+        assertTrue(term instanceof SubjectTerm);
+        assertEquals("invoice", ((SubjectTerm) term).getPattern());
+
+        term = IMAPImportHelper.createSubjectTerm("(order|offer|new invoice)");
+        assertTrue(term instanceof OrTerm);
+        assertEquals(3, ((OrTerm) term).getTerms().length);
+        assertEquals("new invoice", ((SubjectTerm) ((OrTerm) term).getTerms()[2]).getPattern());
+    }
+
+    @Test
+    void testRegex() {
+        assertNull(IMAPImportHelper.createSubjectTerm(""));
+        assertNull(IMAPImportHelper.createSubjectTerm("(order|offer|invoice*)"));
+        assertNull(IMAPImportHelper.createSubjectTerm("^order"));
+        assertNull(IMAPImportHelper.createSubjectTerm("order|"));
+        assertNull(IMAPImportHelper.createSubjectTerm("(order)|(offer)"));
+    }
+
+}
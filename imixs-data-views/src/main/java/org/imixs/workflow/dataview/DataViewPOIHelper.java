@@ -32,12 +32,17 @@ import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
 
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.streaming.SXSSFCell;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.imixs.workflow.FileData;
@@ -177,26 +182,11 @@ public class DataViewPOIHelper {
             // no config found
             return;
         }
-        List<String> replaceDevList = poiConfig.getItemValue("findreplace");
-        String eval = poiConfig.getItemValueString("eval");
 
         // load XSSFWorkbook
         try (InputStream imputStream = new ByteArrayInputStream(fileData.getContent())) {
             XSSFWorkbook workbook = new XSSFWorkbook(imputStream);
-            // NOTE: we only take the first sheet !
-            XSSFSheet sheet = workbook.getSheetAt(0);
-
-            updateXSSFWorkbook(workbook, dataDefinition, replaceDevList, workflowService);
-
-            // Update Eval list
-            if (eval != null && !eval.isEmpty()) {
-                // iterate over all cells to be evaluated
-                String[] cellPositions = eval.split(";");
-                for (String cellPos : cellPositions) {
-                    evalXSSFSheet(workbook, sheet, cellPos);
-                }
-                logger.fine("formula evaluation completed");
-            }
+            poiUpdate(dataDefinition, workbook, poiConfig, workflowService);
 
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
             // write back the file
@@ -211,6 +201,46 @@ public class DataViewPOIHelper {
         }
     }
 
+    /**
+     * This helper method applies the POI update defintiions directly to an already
+     * loaded Workbook. The workbook is not written back.
+     * <p>
+     * In a streamed SXSSFWorkbook only the rows of the template and the rows
+     * within the stream window can be updated. Formula cells referring to rows
+     * already flushed can not be evaluated and are calculated by the spreadsheet
+     * application when the file is opened.
+     *
+     * @throws PluginException
+     */
+    public static void poiUpdate(ItemCollection dataDefinition, Workbook workbook,
+            ItemCollection poiConfig, WorkflowService workflowService) throws PluginException {
+
+        // update $modified for Now function
+        dataDefinition.setItemValue("$modified", new Date());
+
+        if (poiConfig == null || !poiConfig.hasItem("findreplace")) {
+            // no config found
+            return;
+        }
+        List<String> replaceDevList = poiConfig.getItemValue("findreplace");
+        String eval = poiConfig.getItemValueString("eval");
+
+        // NOTE: we only take the first sheet !
+        Sheet sheet = workbook.getSheetAt(0);
+
+        updateXSSFWorkbook(workbook, dataDefinition, replaceDevList, workflowService);
+
+        // Update Eval list
+        if (eval != null && !eval.isEmpty()) {
+            // iterate over all cells to be evaluated
+            String[] cellPositions = eval.split(";");
+            for (String cellPos : cellPositions) {
+                evalXSSFSheet(workbook, sheet, cellPos);
+            }
+            logger.fine("formula evaluation completed");
+        }
+    }
+
     /**
      * Returns a Cell by name or an optional absolute cell postion
      * <p>
@@ -219,7 +249,16 @@ public class DataViewPOIHelper {
      *
      */
     public static XSSFCell getCellByRef(XSSFWorkbook doc, XSSFSheet sheet, String cellReference) {
-        XSSFCell cell = null;
+        return (XSSFCell) getCellByRef((Workbook) doc, (Sheet) sheet, cellReference);
+    }
+
+    /**
+     * Returns a Cell by name or an optional absolute cell postion. In a streamed
+     * SXSSFWorkbook the rows of the template are resolved from the underlying
+     * XSSFWorkbook.
+     */
+    public static Cell getCellByRef(Workbook doc, Sheet sheet, String cellReference) {
+        Cell cell = null;
 
         // first we test if the cellName is a named cell
         Name aNamedCell = doc.getName(cellReference);
@@ -231,7 +270,11 @@ public class DataViewPOIHelper {
         }
 
         CellReference cr = new CellReference(cellReference);
-        XSSFRow row = sheet.getRow(cr.getRow());
+        Row row = sheet.getRow(cr.getRow());
+        if (row == null && doc instanceof SXSSFWorkbook) {
+            // the rows of the template are not part of the streamed sheet
+            row = ((SXSSFWorkbook) doc).getXSSFWorkbook().getSheetAt(doc.getSheetIndex(sheet)).getRow(cr.getRow());
+        }
         if (row == null) {
             logger.severe("Unable to resolve cell ref '" + cellReference + "'!");
             return null;
@@ -252,10 +295,22 @@ public class DataViewPOIHelper {
     public static void updateXSSFWorkbook(XSSFWorkbook workbook, ItemCollection workitem, List<String> replaceDevList,
             WorkflowService workflowService)
             throws PluginException {
+        updateXSSFWorkbook((Workbook) workbook, workitem, replaceDevList, workflowService);
+    }
+
+    /**
+     * This method updates a Workbook document, e.g. a streamed SXSSFWorkbook.
+     * 
+     * @see #updateXSSFWorkbook(XSSFWorkbook, ItemCollection, List, WorkflowService)
+     * @throws PluginException
+     */
+    public static void updateXSSFWorkbook(Workbook workbook, ItemCollection workitem, List<String> replaceDevList,
+            WorkflowService workflowService)
+            throws PluginException {
 
         logger.fine("XSSFWorkbook loaded");
         // NOTE: we only take the first sheet !
-        XSSFSheet sheet = workbook.getSheetAt(0);
+        Sheet sheet = workbook.getSheetAt(0);
 
         for (String entityDev : replaceDevList) {
             ItemCollection entityData = XMLParser.parseItemStructure(entityDev);
@@ -289,8 +344,18 @@ public class DataViewPOIHelper {
      */
     public static void replaceXSSFSheetItemValue(XSSFWorkbook doc, XSSFSheet sheet, String find, Object itemValue)
             throws PluginException {
+        replaceXSSFSheetItemValue((Workbook) doc, (Sheet) sheet, find, itemValue);
+    }
+
+    /**
+     * Helper method replaces a given cell of a Sheet with a typed item value
+     * 
+     * @throws PluginException
+     */
+    public static void replaceXSSFSheetItemValue(Workbook doc, Sheet sheet, String find, Object itemValue)
+            throws PluginException {
         logger.finest("update cell " + find);
-        XSSFCell cell = getCellByRef(doc, sheet, find);
+        Cell cell = getCellByRef(doc, sheet, find);
         if (cell == null) {
             logger.warning("Cell " + find + " not found.");
             return;
@@ -310,10 +375,10 @@ public class DataViewPOIHelper {
      * 
      * @throws PluginException
      */
-    private static void replaceXSSFSheetStringValue(XSSFWorkbook doc, XSSFSheet sheet, String find, String replace)
+    private static void replaceXSSFSheetStringValue(Workbook doc, Sheet sheet, String find, String replace)
             throws PluginException {
         logger.finest("update cell " + find);
-        XSSFCell cell = getCellByRef(doc, sheet, find);
+        Cell cell = getCellByRef(doc, sheet, find);
         if (cell == null) {
             logger.warning("Cell " + find + " not found.");
             return;
@@ -337,13 +402,28 @@ public class DataViewPOIHelper {
      * @throws PluginException
      */
     public static void evalXSSFSheet(XSSFWorkbook doc, XSSFSheet sheet, String cell) throws PluginException {
+        evalXSSFSheet((Workbook) doc, (Sheet) sheet, cell);
+    }
+
+    /**
+     * Evaluates a given cell in a Workbook. In a streamed SXSSFWorkbook only cells
+     * within the stream window can be evaluated.
+     * 
+     * @throws PluginException
+     */
+    public static void evalXSSFSheet(Workbook doc, Sheet sheet, String cell) throws PluginException {
         FormulaEvaluator evaluator = doc.getCreationHelper().createFormulaEvaluator();
-        XSSFCell c = getCellByRef(doc, sheet, cell);
+        Cell c = getCellByRef(doc, sheet, cell);
         if (c == null) {
             logger.warning("Cell " + cell + " not found.");
             return;
         }
         if (c.getCellType() == CellType.FORMULA) {
+            if (doc instanceof SXSSFWorkbook && !(c instanceof SXSSFCell)) {
+                // template cells can not see the streamed rows
+                logger.fine("...cell " + cell + " is calculated when the file is opened");
+                return;
+            }
             logger.finest("...eval cell " + cell);
             try {
                 CellType evalResult = evaluator.evaluateFormulaCell(c);
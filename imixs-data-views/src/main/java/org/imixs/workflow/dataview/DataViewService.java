@@ -18,25 +18,48 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaShifter;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellCopyPolicy;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.usermodel.helpers.XSSFRowShifter;
 import org.imixs.archive.core.SnapshotService;
 import org.imixs.workflow.FileData;
 import org.imixs.workflow.ItemCollection;
 import org.imixs.workflow.engine.DocumentService;
 import org.imixs.workflow.engine.WorkflowService;
+import org.imixs.workflow.engine.index.SchemaService;
 import org.imixs.workflow.exceptions.PluginException;
 import org.imixs.workflow.exceptions.QueryException;
 
@@ -64,6 +87,8 @@ public class DataViewService implements Serializable {
     private static Logger logger = Logger.getLogger(DataViewService.class.getName());
 
     public static final int MAX_ROWS = 9999;
+    public static final int POI_STREAM_WINDOW = 100;
+    public static final int POI_STREAM_PAGESIZE = 500;
     public static final String ERROR_API = "API_ERROR";
     public static final String ERROR_CONFIG = "CONFIG_ERROR";
     public static final String ERROR_MISSING_DATA = "MISSING_DATA";
@@ -77,6 +102,9 @@ public class DataViewService implements Serializable {
     @Inject
     protected SnapshotService snapshotService;
 
+    @Inject
+    protected SchemaService schemaService;
+
     @Inject
     protected Event<DataViewExportEvent> dataViewExportEvents;
 
@@ -159,6 +187,73 @@ public class DataViewService implements Serializable {
         return result;
     }
 
+    /**
+     * Returns true if all items of the given view item definitions are stored in
+     * the search index. In this case the data of a view can be loaded as document
+     * stubs from the index without loading the full documents from the database.
+     * 
+     * @param viewItemDefinitions
+     * @return true if the view can be loaded from stubs
+     */
+    public boolean isStubProjection(List<ItemCollection> viewItemDefinitions) {
+        if (viewItemDefinitions == null || viewItemDefinitions.size() == 0) {
+            return false;
+        }
+        Set<String> storeFields = new HashSet<String>();
+        for (String field : schemaService.getFieldListStore()) {
+            storeFields.add(field.toLowerCase());
+        }
+        for (ItemCollection itemDef : viewItemDefinitions) {
+            String name = itemDef.getItemValueString("item.name").toLowerCase();
+            if (name.isEmpty() || !storeFields.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads a page of documents for a data view. If all view items are stored in
+     * the search index, only document stubs are loaded. Otherwise the full
+     * documents are loaded.
+     * <p>
+     * Date values of document stubs are converted into Date objects if the index
+     * returns the string representation 'yyyyMMddHHmmss'.
+     * 
+     * @param query
+     * @param pageSize
+     * @param pageIndex
+     * @param sortBy
+     * @param sortReverse
+     * @param viewItemDefinitions - the view columns to be projected
+     * @return list of documents
+     * @throws QueryException
+     */
+    public List<ItemCollection> findProjection(String query, int pageSize, int pageIndex, String sortBy,
+            boolean sortReverse, List<ItemCollection> viewItemDefinitions) throws QueryException {
+        if (!isStubProjection(viewItemDefinitions)) {
+            return documentService.find(query, pageSize, pageIndex, sortBy, sortReverse);
+        }
+        List<ItemCollection> result = documentService.findStubs(query, pageSize, pageIndex, sortBy, sortReverse);
+        SimpleDateFormat indexDateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
+        for (ItemCollection itemDef : viewItemDefinitions) {
+            if ("xs:date".equals(itemDef.getItemValueString("item.type"))) {
+                String name = itemDef.getItemValueString("item.name");
+                for (ItemCollection stub : result) {
+                    Object value = stub.getItemValue(name).isEmpty() ? null : stub.getItemValue(name).get(0);
+                    if (value instanceof String && ((String) value).length() == 14) {
+                        try {
+                            stub.setItemValue(name, indexDateFormat.parse((String) value));
+                        } catch (ParseException e) {
+                            // keep the original value
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * This method returns the first excel poi template from the Data Definition
      *
@@ -181,6 +276,25 @@ public class DataViewService implements Serializable {
 
     }
 
+    /**
+     * Loads a file attached to a workitem. If the content of the file was moved
+     * into the snapshot, the file is loaded from the snapshot.
+     * 
+     * @param workitem
+     * @param fileName
+     * @return FileData or null if the file does not exist
+     */
+    public FileData loadFileData(ItemCollection workitem, String fileName) {
+        FileData fileData = workitem.getFileData(fileName);
+        if (fileData == null) {
+            return null;
+        }
+        if (fileData.getContent() == null || fileData.getContent().length == 0) {
+            fileData = snapshotService.getWorkItemFile(workitem.getUniqueID(), fileName);
+        }
+        return fileData;
+    }
+
     /**
      * Applies item values to the given query string defined in a dataViewDefinition
      * 
@@ -274,14 +388,7 @@ public class DataViewService implements Serializable {
         // load XSSFWorkbook
         FileData templateFileData = loadTemplate(dataViewDefinition);
         // build target name
-        SimpleDateFormat dateformat = new SimpleDateFormat("yyyyMMddHHmm");
-        String targetFileName = dataViewDefinition.getItemValueString("poi.targetFilename");
-        if (targetFileName.isEmpty()) {
-            throw new PluginException(DataViewController.class.getSimpleName(), DataViewService.ERROR_CONFIG,
-                    "Missing Excel Export definition - check configuration!");
-        }
-        targetFileName = workflowService.adaptText(targetFileName, dataViewDefinition);
-        targetFileName = targetFileName + "_" + dateformat.format(new Date()) + ".xlsx";
+        String targetFileName = computeTargetFileName(dataViewDefinition);
 
         // start export
         if (debug) {
@@ -317,6 +424,308 @@ public class DataViewService implements Serializable {
         }
     }
 
+    /**
+     * The method exports all documents matching a query into a POI XSSFWorkbook
+     * and returns a new FileData object. The Workbook is loaded from a template
+     * data in a dataViewDefinition.
+     * <p>
+     * In difference to the method poiExport the documents are not loaded into one
+     * dataset. The method pages through the query result in the given sort order
+     * and streams the rows through a SXSSFWorkbook. Only a window of
+     * POI_STREAM_WINDOW rows is held in memory, so the export has no row limit.
+     * <p>
+     * Because rows can only be appended in a streamed workbook, the reference row
+     * is replaced by the data rows and all rows below the reference row are moved
+     * behind the last data row. Formula references in the workbook are adjusted
+     * in the same way as by the method poiExport, so a total like SUM(B2:B3)
+     * covers all data rows. The optional poi-update configuration is applied after
+     * all rows are written. Formula cells are recalculated by the spreadsheet
+     * application when the file is opened.
+     * <p>
+     * Note: The workbook is written into a temporary file. As FileData holds its
+     * content as a byte array, the finished file is still read into memory once.
+     * <p>
+     * Note: No DataViewExportEvent is fired by this method as the dataset is never
+     * loaded completely.
+     * 
+     * @param query               - query selecting the documents
+     * @param sortBy              - sort item
+     * @param sortReverse         - sort order
+     * @param dataViewDefinition  - the data view definition with the template
+     * @param viewItemDefinitions - the column definitions
+     * @param dataDefinition      - the document providing data for poi-update
+     * @param poiConfig           - optional poi-update configuration
+     * @return FileData with the export
+     * @throws PluginException
+     * @throws QueryException
+     */
+    public FileData poiExportStream(String query, String sortBy, boolean sortReverse,
+            ItemCollection dataViewDefinition, List<ItemCollection> viewItemDefinitions,
+            ItemCollection dataDefinition, ItemCollection poiConfig) throws PluginException, QueryException {
+
+        boolean debug = dataViewDefinition.getItemValueBoolean("debug");
+        FileData templateFileData = loadTemplate(dataViewDefinition);
+        String targetFileName = computeTargetFileName(dataViewDefinition);
+        if (debug) {
+            logger.info("├── Start POI Stream Export : " + targetFileName + "...");
+            logger.info("│   ├── Target File: " + targetFileName);
+        }
+
+        Path tempFile = null;
+        SXSSFWorkbook streamWorkbook = null;
+        try (InputStream inputStream = new ByteArrayInputStream(templateFileData.getContent())) {
+            XSSFWorkbook doc = new XSSFWorkbook(inputStream);
+            doc.setForceFormulaRecalculation(true);
+
+            // NOTE: we only take the first sheet !
+            XSSFSheet sheet = doc.getSheetAt(0);
+            CellReference cr = new CellReference(dataViewDefinition.getItemValueString("poi.referenceCell"));
+            XSSFRow referenceRow = sheet.getRow(cr.getRow());
+            if (referenceRow == null) {
+                throw new PluginException(DataViewService.class.getSimpleName(), ERROR_CONFIG,
+                        "Invalid poi.referenceCell - reference row not found in template!");
+            }
+            int referenceRowNum = referenceRow.getRowNum();
+            int lastRowNum = sheet.getLastRowNum();
+            int rowPos = referenceRowNum;
+            // collect the reference styles
+            CellStyle[] referenceStyles = new CellStyle[Math.max(referenceRow.getLastCellNum(), 0)];
+            for (int i = 0; i < referenceStyles.length; i++) {
+                XSSFCell cell = referenceRow.getCell(i);
+                referenceStyles[i] = (cell != null) ? cell.getCellStyle() : null;
+            }
+            // detach the reference row and all following rows
+            List<XSSFRow> tailRows = new ArrayList<XSSFRow>();
+            for (int i = rowPos + 1; i <= lastRowNum; i++) {
+                XSSFRow row = sheet.getRow(i);
+                if (row != null) {
+                    tailRows.add(row);
+                }
+            }
+            List<Integer> tailRowNums = new ArrayList<Integer>();
+            List<List<Object[]>> tailData = new ArrayList<List<Object[]>>();
+            for (XSSFRow row : tailRows) {
+                tailRowNums.add(row.getRowNum());
+                tailData.add(readRowValues(row));
+                sheet.removeRow(row);
+            }
+            sheet.removeRow(referenceRow);
+
+            streamWorkbook = new SXSSFWorkbook(doc, POI_STREAM_WINDOW);
+            Sheet streamSheet = streamWorkbook.getSheetAt(0);
+
+            // page through the data....
+            int pageIndex = 0;
+            int count = 0;
+            while (true) {
+                List<ItemCollection> dataset = findProjection(query, POI_STREAM_PAGESIZE, pageIndex, sortBy,
+                        sortReverse, viewItemDefinitions);
+                for (ItemCollection workitem : dataset) {
+                    Row row = streamSheet.createRow(rowPos++);
+                    insertCells(row, workitem, viewItemDefinitions, referenceStyles);
+                    count++;
+                }
+                if (dataset.size() < POI_STREAM_PAGESIZE) {
+                    break;
+                }
+                pageIndex++;
+            }
+            // the reference row was replaced by the data rows. The formulas are shifted
+            // like sheet.shiftRows in insertRows does - first the rows below the reference
+            // row are moved behind the data rows, next the reference row is removed.
+            String sheetName = sheet.getSheetName();
+            FormulaShifter[] shifters = new FormulaShifter[] {
+                    FormulaShifter.createForRowShift(0, sheetName, referenceRowNum + 1, lastRowNum, count,
+                            SpreadsheetVersion.EXCEL2007),
+                    FormulaShifter.createForRowShift(0, sheetName, referenceRowNum + 1, lastRowNum + count, -1,
+                            SpreadsheetVersion.EXCEL2007) };
+            XSSFRowShifter rowShifter = new XSSFRowShifter(sheet);
+            for (FormulaShifter shifter : shifters) {
+                rowShifter.updateNamedRanges(shifter);
+                rowShifter.updateFormulas(shifter);
+                rowShifter.updateConditionalFormatting(shifter);
+            }
+            // append the tail rows keeping their distance to the data rows
+            for (int i = 0; i < tailData.size(); i++) {
+                int tailRowNum = tailRowNums.get(i);
+                writeRowValues(streamSheet.createRow(tailRowNum + count - 1), tailData.get(i),
+                        doc, tailRowNum, shifters);
+            }
+            if (debug) {
+                logger.info("│   ├── " + count + " rows exported");
+            }
+            // apply the poi-update configuration after all rows are written
+            DataViewPOIHelper.poiUpdate(dataDefinition, streamWorkbook, poiConfig, workflowService);
+
+            tempFile = Files.createTempFile("imixs-dataview-", ".xlsx");
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                streamWorkbook.write(outputStream);
+            }
+            // FileData requires the content as a byte array
+            return new FileData(targetFileName, Files.readAllBytes(tempFile), templateFileData.getContentType(),
+                    null);
+
+        } catch (IOException e) {
+            throw new PluginException(DataViewPOIHelper.class.getSimpleName(), ERROR_CONFIG,
+                    "failed to stream excel export: " + e.getMessage());
+        } finally {
+            if (streamWorkbook != null) {
+                // remove the temporary sheet data
+                streamWorkbook.dispose();
+                try {
+                    streamWorkbook.close();
+                } catch (IOException e) {
+                    logger.warning("failed to close excel export: " + e.getMessage());
+                }
+            }
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    logger.warning("failed to delete temp file " + tempFile + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the target file name for a poi export defined by the item
+     * 'poi.targetFilename' of a dataViewDefinition.
+     * 
+     * @throws PluginException
+     */
+    private String computeTargetFileName(ItemCollection dataViewDefinition) throws PluginException {
+        SimpleDateFormat dateformat = new SimpleDateFormat("yyyyMMddHHmm");
+        String targetFileName = dataViewDefinition.getItemValueString("poi.targetFilename");
+        if (targetFileName.isEmpty()) {
+            throw new PluginException(DataViewController.class.getSimpleName(), DataViewService.ERROR_CONFIG,
+                    "Missing Excel Export definition - check configuration!");
+        }
+        targetFileName = workflowService.adaptText(targetFileName, dataViewDefinition);
+        return targetFileName + "_" + dateformat.format(new Date()) + ".xlsx";
+    }
+
+    /**
+     * Inserts the item values of a workitem as typed cells into a new row. The
+     * cells get the style of the corresponding reference cell.
+     */
+    private void insertCells(Row row, ItemCollection workitem, List<ItemCollection> viewItemDefinitions,
+            CellStyle[] referenceStyles) {
+        int cellNum = 0;
+        for (ItemCollection itemDef : viewItemDefinitions) {
+            String type = itemDef.getItemValueString("item.type");
+            String name = itemDef.getItemValueString("item.name");
+            try {
+                Cell cell = row.createCell(cellNum);
+                if (cellNum < referenceStyles.length && referenceStyles[cellNum] != null) {
+                    cell.setCellStyle(referenceStyles[cellNum]);
+                }
+                switch (type) {
+                    case "xs:double":
+                        cell.setCellValue(workitem.getItemValueDouble(name));
+                        break;
+                    case "xs:float":
+                        cell.setCellValue(workitem.getItemValueFloat(name));
+                        break;
+                    case "xs:int":
+                        cell.setCellValue(workitem.getItemValueInteger(name));
+                        break;
+                    case "xs:date":
+                        cell.setCellValue(workitem.getItemValueDate(name));
+                        break;
+                    default:
+                        cell.setCellValue(workitem.getItemValueString(name));
+                }
+            } catch (Exception epoi) {
+                logger.warning("POI Error cell " + cellNum + " item: " + name);
+            }
+            cellNum++;
+        }
+    }
+
+    /**
+     * Reads the cells of a row into a list of [columnIndex, style, type, value]
+     * entries.
+     */
+    private List<Object[]> readRowValues(XSSFRow row) {
+        List<Object[]> result = new ArrayList<Object[]>();
+        for (Cell cell : row) {
+            Object value = null;
+            CellType cellType = cell.getCellType();
+            switch (cellType) {
+                case FORMULA:
+                    value = cell.getCellFormula();
+                    break;
+                case NUMERIC:
+                    value = cell.getNumericCellValue();
+                    break;
+                case BOOLEAN:
+                    value = cell.getBooleanCellValue();
+                    break;
+                case STRING:
+                    value = cell.getStringCellValue();
+                    break;
+                default:
+                    break;
+            }
+            result.add(new Object[] { cell.getColumnIndex(), cell.getCellStyle(), cellType, value });
+        }
+        return result;
+    }
+
+    /**
+     * Writes the values collected by readRowValues into a new row. The references
+     * of formulas are adjusted by the given FormulaShifters.
+     * 
+     * @param doc       - the workbook of the template
+     * @param rowNum    - the origin row number in the template
+     * @param shifters  - the shifters to adjust formulas
+     */
+    private void writeRowValues(Row row, List<Object[]> rowValues, XSSFWorkbook doc, int rowNum,
+            FormulaShifter[] shifters) {
+        for (Object[] entry : rowValues) {
+            Cell cell = row.createCell((Integer) entry[0]);
+            cell.setCellStyle((CellStyle) entry[1]);
+            Object value = entry[3];
+            switch ((CellType) entry[2]) {
+                case FORMULA:
+                    cell.setCellFormula(shiftFormula((String) value, doc, rowNum, shifters));
+                    break;
+                case NUMERIC:
+                    cell.setCellValue((Double) value);
+                    break;
+                case BOOLEAN:
+                    cell.setCellValue((Boolean) value);
+                    break;
+                case STRING:
+                    cell.setCellValue((String) value);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Adjusts the references of a formula of the first sheet by the given
+     * FormulaShifters. If the formula can not be parsed, the formula is returned
+     * unchanged.
+     */
+    private String shiftFormula(String formula, XSSFWorkbook doc, int rowNum, FormulaShifter[] shifters) {
+        try {
+            XSSFEvaluationWorkbook evaluationWorkbook = XSSFEvaluationWorkbook.create(doc);
+            Ptg[] ptgs = FormulaParser.parse(formula, evaluationWorkbook, FormulaType.CELL, 0, rowNum);
+            boolean changed = false;
+            for (FormulaShifter shifter : shifters) {
+                changed = shifter.adjustFormula(ptgs, 0) || changed;
+            }
+            return changed ? FormulaRenderer.toFormulaString(evaluationWorkbook, ptgs) : formula;
+        } catch (FormulaParseException e) {
+            logger.warning("failed to adjust formula '" + formula + "': " + e.getMessage());
+            return formula;
+        }
+    }
+
     /**
      * This helper method inserts for each ItemCollection of a DataSet a new row
      * into a POI